@@ -0,0 +1,107 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import bench.Workload;
+
+/**
+ * Runs the work of the JMH benchmarks on SymSpell, using the same seeded
+ * corpora and inputs as Benchmark
+ */
+public class SymSpellWorkload implements Workload {
+
+	private long seed = 1;
+	private Path corpus = null;
+	private List<String> names = null;
+	private SymSpell sc = null;
+	private Verbosity verbosity = Verbosity.TOP;
+
+	@Override
+	public void setUp(long seed, int names) throws IOException {
+		this.seed = seed;
+		this.names = Benchmark.generateNames(seed, names);
+		this.corpus = Files.createTempFile("names", ".txt");
+		Files.write(this.corpus, this.names, StandardCharsets.UTF_8);
+		return;
+	}
+
+	@Override
+	public void tearDown() throws IOException {
+		if (this.corpus != null) {
+			Files.delete(this.corpus);
+			this.corpus = null;
+		}
+		return;
+	}
+
+	@Override
+	public boolean createDictionary(int distance) {
+		return new SymSpell(distance).CreateDictionary(this.corpus.toString());
+	}
+
+	@Override
+	public void load(int distance, String verbosity) {
+		this.sc = new SymSpell(distance);
+		if (!this.sc.CreateDictionary(this.corpus.toString())) {
+			throw new IllegalStateException("Could not build the dictionary");
+		}
+		this.verbosity = Verbosity.valueOf(verbosity);
+		return;
+	}
+
+	@Override
+	public String[] inputs(String kind, int count) {
+		String[][] inputs = Benchmark.generateInputs(this.names, new Random(
+				this.seed + 1), count);
+		int index = Arrays.asList(Benchmark.INPUT_KINDS).indexOf(kind);
+		if (index < 0) {
+			throw new IllegalArgumentException("Unknown input " + kind);
+		}
+		return inputs[index];
+	}
+
+	@Override
+	public String[][] pairs(long seed, int length, int count) {
+		return Benchmark.generatePairs(length, count, new Random(seed + 2));
+	}
+
+	@Override
+	public int lookup(String input) {
+		return this.sc.Lookup(input, this.verbosity).size();
+	}
+
+	@Override
+	public String correct(String input) {
+		return this.sc.Correct(input);
+	}
+
+	@Override
+	public int distance(String a, String b) {
+		return SymSpell.DamerauLevenshteinDistance(a, b);
+	}
+}
@@ -0,0 +1,89 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times lookups of names in the dictionary, of misspelled names and of
+ * inputs far from every name, at each verbosity
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+
+	// Inputs cycled through, a power of two so the next one is a mask away
+	private static final int INPUTS = 1024;
+
+	@Param("1")
+	public long seed;
+	@Param("10000")
+	public int names;
+	@Param("2")
+	public int distance;
+	@Param({ "exact", "near", "none" })
+	public String input;
+	@Param({ "TOP", "CLOSEST", "ALL" })
+	public String verbosity;
+
+	private final Workload workload = Workload.create();
+	private String[] inputs = null;
+	private int next = 0;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		this.workload.setUp(this.seed, this.names);
+		this.workload.load(this.distance, this.verbosity);
+		this.inputs = this.workload.inputs(this.input, LookupBenchmark.INPUTS);
+		return;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		this.workload.tearDown();
+		return;
+	}
+
+	@Benchmark
+	public int lookup() {
+		this.next = (this.next + 1) & (LookupBenchmark.INPUTS - 1);
+		return this.workload.lookup(this.inputs[this.next]);
+	}
+}
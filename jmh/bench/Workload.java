@@ -0,0 +1,140 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package bench;
+
+import java.io.IOException;
+
+/**
+ * Work measured by the JMH benchmarks. JMH only runs benchmarks that are in a
+ * named package, while the spelling corrector is in the default package, which
+ * a named package can't import, so the benchmarks reach it through this
+ * interface. SymSpellWorkload implements it next to the corrector.
+ */
+public interface Workload {
+
+	/**
+	 * Creates the workload that runs on SymSpell
+	 * 
+	 * @return New workload
+	 */
+	static Workload create() {
+		try {
+			return Class.forName("SymSpellWorkload")
+					.asSubclass(Workload.class).getDeclaredConstructor()
+					.newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Writes a corpus of names generated from a seed
+	 * 
+	 * @param seed
+	 *            Seed of the names and of the inputs made from them
+	 * @param names
+	 *            Number of names in the corpus, with repeats
+	 * @throws IOException
+	 *             If the corpus can't be written
+	 */
+	void setUp(long seed, int names) throws IOException;
+
+	/**
+	 * Deletes the corpus
+	 * 
+	 * @throws IOException
+	 *             If the corpus can't be deleted
+	 */
+	void tearDown() throws IOException;
+
+	/**
+	 * Builds a new dictionary from the corpus
+	 * 
+	 * @param distance
+	 *            Maximum edit distance of the dictionary
+	 * @return True if the dictionary was built
+	 */
+	boolean createDictionary(int distance);
+
+	/**
+	 * Builds the dictionary that lookups and corrections run on
+	 * 
+	 * @param distance
+	 *            Maximum edit distance of the dictionary
+	 * @param verbosity
+	 *            Name of the verbosity of lookups
+	 */
+	void load(int distance, String verbosity);
+
+	/**
+	 * Makes inputs from names in the corpus
+	 * 
+	 * @param kind
+	 *            "exact" for names in the corpus, "near" for names with one or
+	 *            two edits and "none" for inputs far from every name
+	 * @param count
+	 *            Number of inputs
+	 * @return Inputs
+	 */
+	String[] inputs(String kind, int count);
+
+	/**
+	 * Makes pairs of strings of a length that differ in a few places
+	 * 
+	 * @param seed
+	 *            Seed of the pairs
+	 * @param length
+	 *            Length of the first string of each pair
+	 * @param count
+	 *            Number of pairs
+	 * @return First strings of the pairs, then second strings
+	 */
+	String[][] pairs(long seed, int length, int count);
+
+	/**
+	 * Looks up an input in the loaded dictionary
+	 * 
+	 * @param input
+	 *            Input to look up
+	 * @return Number of suggestions
+	 */
+	int lookup(String input);
+
+	/**
+	 * Corrects an input with the loaded dictionary
+	 * 
+	 * @param input
+	 *            Input to correct
+	 * @return Corrected input
+	 */
+	String correct(String input);
+
+	/**
+	 * Computes the Damerau-Levenshtein distance of two strings
+	 * 
+	 * @param a
+	 *            First string
+	 * @param b
+	 *            Second string
+	 * @return Distance between the strings
+	 */
+	int distance(String a, String b);
+}
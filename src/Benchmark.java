@@ -0,0 +1,421 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Times dictionary builds, lookups and edit distances on name corpora that
+ * are generated from a seed, so runs can be compared with each other. Each
+ * benchmark is warmed up and then measured over several iterations, and the
+ * results are written as CSV or JSON.
+ * 
+ * Usage: java Benchmark [--seed n] [--names n] [--iterations n]
+ * [--millis n] [--format csv|json] [--out file]
+ */
+public class Benchmark {
+
+	private static final String[] SYLLABLES = { "an", "ar", "be", "bo", "ca",
+			"da", "de", "el", "en", "fa", "ga", "ha", "il", "in", "ja", "jo",
+			"ka", "ki", "la", "le", "li", "lo", "ma", "mi", "na", "ne", "ni",
+			"no", "ra", "re", "ri", "ro", "sa", "se", "si", "ta", "te", "th",
+			"to", "va", "vi", "ya", "za", "ze" };
+	private static final int[] DISTANCE_LENGTHS = { 4, 8, 16, 32, 64, 128 };
+	// Inputs of each kind looked up by the lookup benchmarks
+	private static final int INPUTS = 1024;
+	// Kinds of inputs made by generateInputs, in order
+	public static final String[] INPUT_KINDS = { "exact", "near", "none" };
+
+	private long seed = 1;
+	private int names = 10000;
+	private int iterations = 5;
+	private long millis = 500;
+	private String format = "csv";
+	private String out = null;
+
+	private final List<String[]> results = new ArrayList<String[]>();
+	// Keeps results alive so the work that makes them can't be skipped
+	private volatile long sink = 0;
+
+	/**
+	 * Runs every benchmark and writes the results
+	 * 
+	 * @param args
+	 *            Options of the run
+	 */
+	public static void main(String[] args) {
+		Benchmark benchmark = new Benchmark();
+		try {
+			for (int x = 0; x < args.length; x += 2) {
+				String value = (x + 1 < args.length) ? args[x + 1] : "";
+				if (args[x].equals("--seed")) {
+					benchmark.seed = Long.parseLong(value);
+				} else if (args[x].equals("--names")) {
+					benchmark.names = Integer.parseInt(value);
+				} else if (args[x].equals("--iterations")) {
+					benchmark.iterations = Integer.parseInt(value);
+				} else if (args[x].equals("--millis")) {
+					benchmark.millis = Long.parseLong(value);
+				} else if (args[x].equals("--format")) {
+					benchmark.format = value;
+				} else if (args[x].equals("--out")) {
+					benchmark.out = value;
+				} else {
+					throw new IllegalArgumentException("Unknown option "
+							+ args[x]);
+				}
+			}
+			benchmark.run();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return;
+	}
+
+	/**
+	 * Generates a corpus of names, where some names occur more often than
+	 * others
+	 * 
+	 * @param seed
+	 *            Seed of the names, which always gives the same corpus
+	 * @param count
+	 *            Number of names in the corpus, with repeats
+	 * @return Names in the order they occur
+	 */
+	public static List<String> generateNames(long seed, int count) {
+		Random random = new Random(seed);
+		List<String> distinct = new ArrayList<String>();
+		List<String> corpus = new ArrayList<String>(count);
+		for (int x = 0; x < count; x++) {
+			// About one name in five repeats an earlier name, favouring the
+			// first ones
+			if ((distinct.size() > 0) && (random.nextInt(5) == 0)) {
+				double skew = random.nextDouble();
+				corpus.add(distinct.get((int) (skew * skew * distinct.size())));
+				continue;
+			}
+			StringBuilder name = new StringBuilder();
+			int syllables = 2 + random.nextInt(3);
+			for (int y = 0; y < syllables; y++) {
+				name.append(Benchmark.SYLLABLES[random
+						.nextInt(Benchmark.SYLLABLES.length)]);
+			}
+			distinct.add(name.toString());
+			corpus.add(name.toString());
+		}
+		return corpus;
+	}
+
+	/**
+	 * Makes random edits to a string
+	 * 
+	 * @param word
+	 *            String to edit
+	 * @param edits
+	 *            Number of deletes, inserts, replaces or transposes to make
+	 * @param random
+	 *            Source of the edits
+	 * @return Edited string
+	 */
+	public static String misspell(String word, int edits, Random random) {
+		StringBuilder edited = new StringBuilder(word);
+		for (int x = 0; x < edits; x++) {
+			int at = random.nextInt(edited.length());
+			char letter = (char) ('a' + random.nextInt(26));
+			switch (random.nextInt(4)) {
+			case 0:
+				if (edited.length() > 1) {
+					edited.deleteCharAt(at);
+				}
+				break;
+			case 1:
+				edited.insert(at, letter);
+				break;
+			case 2:
+				edited.setCharAt(at, letter);
+				break;
+			default:
+				if (at + 1 < edited.length()) {
+					char first = edited.charAt(at);
+					edited.setCharAt(at, edited.charAt(at + 1));
+					edited.setCharAt(at + 1, first);
+				}
+				break;
+			}
+		}
+		return edited.toString();
+	}
+
+	/**
+	 * Makes inputs of each kind from names: the names themselves, names with
+	 * one or two edits, and inputs far from every name
+	 * 
+	 * @param names
+	 *            Names the inputs are made from
+	 * @param random
+	 *            Source of the names picked and of their edits
+	 * @param count
+	 *            Number of inputs of each kind
+	 * @return Inputs of each kind, in the order of INPUT_KINDS
+	 */
+	public static String[][] generateInputs(List<String> names,
+			Random random, int count) {
+		String[][] inputs = new String[Benchmark.INPUT_KINDS.length][count];
+		for (int x = 0; x < count; x++) {
+			String name = names.get(random.nextInt(names.size()));
+			inputs[0][x] = name;
+			inputs[1][x] = Benchmark.misspell(name, 1 + random.nextInt(2),
+					random);
+			inputs[2][x] = "qx" + Benchmark.misspell(name, 4, random) + "wq";
+		}
+		return inputs;
+	}
+
+	/**
+	 * Makes pairs of strings that differ in a few places
+	 * 
+	 * @param length
+	 *            Length of the first string of each pair
+	 * @param count
+	 *            Number of pairs
+	 * @param random
+	 *            Source of the strings and of their edits
+	 * @return First strings of the pairs, then second strings
+	 */
+	public static String[][] generatePairs(int length, int count,
+			Random random) {
+		String[][] pairs = new String[2][count];
+		for (int x = 0; x < count; x++) {
+			StringBuilder word = new StringBuilder();
+			while (word.length() < length) {
+				word.append(Benchmark.SYLLABLES[random
+						.nextInt(Benchmark.SYLLABLES.length)]);
+			}
+			pairs[0][x] = word.substring(0, length);
+			pairs[1][x] = Benchmark.misspell(pairs[0][x], 2, random);
+		}
+		return pairs;
+	}
+
+	private void run() throws IOException {
+		Path corpus = Files.createTempFile("names", ".txt");
+		try {
+			List<String> names = Benchmark.generateNames(this.seed,
+					this.names);
+			Files.write(corpus, names, StandardCharsets.UTF_8);
+
+			this.benchmarkDistance();
+			this.benchmarkLookup(corpus, names);
+			this.benchmarkBuild(corpus);
+		} finally {
+			Files.delete(corpus);
+		}
+		this.write();
+		return;
+	}
+
+	// Times building the dictionary once per iteration at each distance, on
+	// the calling thread and on a pool with a thread per processor
+	private void benchmarkBuild(Path corpus) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			for (int distance = 1; distance <= 4; distance++) {
+				this.measureBuild(corpus, distance, null);
+				this.measureBuild(corpus, distance, pool);
+			}
+		} finally {
+			pool.shutdown();
+		}
+		return;
+	}
+
+	private void measureBuild(Path corpus, int distance, ForkJoinPool pool) {
+		// Warm up with one build that is not measured
+		new SymSpell(distance).CreateDictionary(corpus.toString(), pool);
+		double[] scores = new double[this.iterations];
+		for (int x = 0; x < scores.length; x++) {
+			long start = System.nanoTime();
+			new SymSpell(distance).CreateDictionary(corpus.toString(), pool);
+			scores[x] = System.nanoTime() - start;
+		}
+		this.addResult("CreateDictionary", "distance=" + distance
+				+ ",threads=" + ((pool == null) ? 1 : pool.getParallelism())
+				+ ((pool == null) ? "" : ",pool"), "ss", scores);
+		return;
+	}
+
+	// Times lookups of terms in the dictionary, of misspelled terms and of
+	// inputs that are far from every term
+	private void benchmarkLookup(Path corpus, List<String> names) {
+		final SymSpell sc = new SymSpell(2);
+		sc.CreateDictionary(corpus.toString());
+
+		final String[][] inputs = Benchmark.generateInputs(names, new Random(
+				this.seed + 1), Benchmark.INPUTS);
+		for (final Verbosity verbosity : Verbosity.values()) {
+			for (int kind = 0; kind < Benchmark.INPUT_KINDS.length; kind++) {
+				final String[] kindInputs = inputs[kind];
+				this.measure("Lookup", "verbosity=" + verbosity + ",input="
+						+ Benchmark.INPUT_KINDS[kind], new Operation() {
+					@Override
+					public int run(int x) {
+						return sc.Lookup(kindInputs[x % kindInputs.length],
+								verbosity).size();
+					}
+				});
+			}
+		}
+		return;
+	}
+
+	// Times both distance functions on pairs of strings of each length that
+	// differ in a few places
+	private void benchmarkDistance() {
+		Random random = new Random(this.seed + 2);
+		for (int length : Benchmark.DISTANCE_LENGTHS) {
+			String[][] pairs = Benchmark.generatePairs(length,
+					Benchmark.INPUTS, random);
+			final String[] a = pairs[0];
+			final String[] b = pairs[1];
+			this.measure("DamerauLevenshteinDistance", "length=" + length,
+					new Operation() {
+						@Override
+						public int run(int x) {
+							return SymSpell.DamerauLevenshteinDistance(a[x
+									% a.length], b[x % b.length]);
+						}
+					});
+			this.measure("EditDistance.damerauLevenshtein", "length=" + length
+					+ ",max=2", new Operation() {
+				@Override
+				public int run(int x) {
+					return EditDistance.damerauLevenshtein(a[x % a.length], b[x
+							% b.length], 2);
+				}
+			});
+		}
+		return;
+	}
+
+	// Runs an operation for the warm up time and then for each iteration,
+	// recording the average time of one operation per iteration
+	private void measure(String name, String params, Operation operation) {
+		this.runFor(operation, this.millis);
+		double[] scores = new double[this.iterations];
+		for (int x = 0; x < scores.length; x++) {
+			long[] counts = this.runFor(operation, this.millis);
+			scores[x] = (double) counts[1] / counts[0];
+		}
+		this.addResult(name, params, "avgt", scores);
+		return;
+	}
+
+	// Returns the number of operations run and the nanoseconds they took
+	private long[] runFor(Operation operation, long millis) {
+		long sum = 0;
+		long operations = 0;
+		long start = System.nanoTime();
+		long end = start + millis * 1000000L;
+		long now;
+		do {
+			// Check the clock once per batch so timing costs little
+			for (int x = 0; x < 64; x++) {
+				sum += operation.run((int) operations++);
+			}
+		} while ((now = System.nanoTime()) < end);
+		this.sink += sum;
+		return new long[] { operations, now - start };
+	}
+
+	private void addResult(String name, String params, String mode,
+			double[] scores) {
+		double mean = 0;
+		for (double score : scores) {
+			mean += score;
+		}
+		mean /= scores.length;
+		double variance = 0;
+		for (double score : scores) {
+			variance += (score - mean) * (score - mean);
+		}
+		double deviation = (scores.length > 1) ? Math.sqrt(variance
+				/ (scores.length - 1)) : 0;
+		String[] result = { name, params, mode,
+				Integer.toString(scores.length),
+				String.format(Locale.ROOT, "%.1f", mean),
+				String.format(Locale.ROOT, "%.1f", deviation), "ns/op" };
+		this.results.add(result);
+		System.out.println(String.join(" ", result));
+		return;
+	}
+
+	private void write() throws IOException {
+		PrintWriter writer = (this.out == null) ? new PrintWriter(System.out)
+				: new PrintWriter(this.out, "UTF-8");
+		String[] columns = { "benchmark", "params", "mode", "iterations",
+				"score", "deviation", "unit" };
+		if (this.format.equals("json")) {
+			writer.println("{\"seed\": " + this.seed + ", \"names\": "
+					+ this.names + ", \"results\": [");
+			for (int x = 0; x < this.results.size(); x++) {
+				String[] result = this.results.get(x);
+				StringBuilder line = new StringBuilder("  {");
+				for (int y = 0; y < columns.length; y++) {
+					// Numbers are written as JSON numbers, the rest as strings
+					boolean number = (y >= 3) && (y <= 5);
+					line.append((y > 0) ? ", " : "").append('"')
+							.append(columns[y]).append("\": ")
+							.append(number ? result[y] : "\"" + result[y] + "\"");
+				}
+				line.append((x + 1 < this.results.size()) ? "}," : "}");
+				writer.println(line);
+			}
+			writer.println("]}");
+		} else {
+			writer.println("seed,names," + String.join(",", columns));
+			for (String[] result : this.results) {
+				// Params hold commas, so they are quoted
+				writer.println(this.seed + "," + this.names + "," + result[0]
+						+ ",\"" + result[1] + "\"," + result[2] + ","
+						+ result[3] + "," + result[4] + "," + result[5] + ","
+						+ result[6]);
+			}
+		}
+		writer.flush();
+		if (this.out != null) {
+			writer.close();
+		}
+		return;
+	}
+
+	// One operation to time; returns a value so its work is not skipped
+	private interface Operation {
+		int run(int x);
+	}
+}
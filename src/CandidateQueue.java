@@ -0,0 +1,319 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+import java.util.Arrays;
+
+/**
+ * First in, first out queue of distinct candidate Strings stored as ranges of
+ * a shared character pool. Deletes of a queued candidate are generated in
+ * place with a rolling hash, so a delete only takes up space if it was not
+ * queued before and no String is ever created.
+ */
+public class CandidateQueue {
+
+	// Characters of every queued candidate, one after another
+	private char[] chars = new char[256];
+	private int charsSize = 0;
+
+	// Per-candidate columns, indexed in the order candidates were added
+	private int[] offsets = new int[64];
+	private int[] lengths = new int[64];
+	private int[] hashes = new int[64];
+	private int[] slots = new int[64];
+	private int size = 0;
+	private int head = 0;
+
+	// Open addressing table of candidate number + 1, 0 marks a free slot
+	private int[] table = new int[128];
+
+	// Scratch space for generating deletes
+	private char[] buffer = new char[64];
+	private int[] prefixes = new int[65];
+	private int[] suffixes = new int[65];
+	private int[] powers = new int[] { 1 };
+
+	/**
+	 * Removes every candidate so the queue can be reused
+	 */
+	public void clear() {
+		// Only the slots that were used have to be freed
+		for (int candidate = 0; candidate < this.size; candidate++) {
+			this.table[this.slots[candidate]] = 0;
+		}
+		this.charsSize = 0;
+		this.size = 0;
+		this.head = 0;
+		return;
+	}
+
+	/**
+	 * Adds a String to the end of the queue
+	 * 
+	 * @param candidate
+	 *            String to add
+	 * @return False if the String was already added since the last clear
+	 */
+	public boolean add(String candidate) {
+		int length = candidate.length();
+		this.ensureBufferCapacity(length);
+		candidate.getChars(0, length, this.buffer, 0);
+		return this.add(this.buffer, length, -1, candidate.hashCode());
+	}
+
+	/**
+	 * Adds the start of a String to the end of the queue
+	 * 
+	 * @param candidate
+	 *            String to add the start of
+	 * @param length
+	 *            Number of characters to add
+	 * @return False if the same characters were already added since the last
+	 *         clear
+	 */
+	public boolean add(String candidate, int length) {
+		if (length == candidate.length()) {
+			return this.add(candidate);
+		}
+		this.ensureBufferCapacity(length);
+		candidate.getChars(0, length, this.buffer, 0);
+		int hash = 0;
+		for (int x = 0; x < length; x++) {
+			hash = 31 * hash + this.buffer[x];
+		}
+		return this.add(this.buffer, length, -1, hash);
+	}
+
+	/**
+	 * Adds every String made by deleting one character from a candidate to the
+	 * end of the queue, skipping Strings that were already added
+	 * 
+	 * @param candidate
+	 *            Number of the candidate to delete from
+	 * @return Number of new candidates
+	 */
+	public int addDeletes(int candidate) {
+		int length = this.lengths[candidate];
+		if (length == 0) {
+			return 0;
+		}
+
+		// Copy the candidate out, since adding may move the pool
+		this.ensureBufferCapacity(length);
+		System.arraycopy(this.chars, this.offsets[candidate], this.buffer, 0,
+				length);
+		this.ensurePowers(length);
+
+		// Hashes of every prefix and suffix, as String.hashCode() computes
+		// them, give the hash of each delete without building it
+		this.prefixes[0] = 0;
+		for (int x = 0; x < length; x++) {
+			this.prefixes[x + 1] = 31 * this.prefixes[x] + this.buffer[x];
+		}
+		this.suffixes[length] = 0;
+		for (int x = length - 1; x >= 0; x--) {
+			this.suffixes[x] = this.buffer[x] * this.powers[length - 1 - x]
+					+ this.suffixes[x + 1];
+		}
+
+		int added = 0;
+		for (int x = 0; x < length; x++) {
+			// Deleting either of two equal neighbours gives the same String
+			if (x > 0 && this.buffer[x] == this.buffer[x - 1]) {
+				continue;
+			}
+			int hash = this.prefixes[x] * this.powers[length - 1 - x]
+					+ this.suffixes[x + 1];
+			if (this.add(this.buffer, length, x, hash)) {
+				added++;
+			}
+		}
+		return added;
+	}
+
+	/**
+	 * Removes the candidate at the front of the queue. Its characters stay
+	 * readable until the next clear.
+	 * 
+	 * @return Number of the candidate, or -1 if the queue is empty
+	 */
+	public int poll() {
+		if (this.head == this.size) {
+			return -1;
+		}
+		return this.head++;
+	}
+
+	/**
+	 * Gets the number of candidates added since the last clear, polled or not
+	 * 
+	 * @return Number of candidates
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Gets the pool holding the characters of the candidates. The pool may be
+	 * replaced when candidates are added.
+	 * 
+	 * @return Character pool
+	 */
+	public char[] getChars() {
+		return this.chars;
+	}
+
+	/**
+	 * Gets where a candidate starts in the character pool
+	 * 
+	 * @param candidate
+	 *            Number of the candidate
+	 * @return Offset into the character pool
+	 */
+	public int getOffset(int candidate) {
+		return this.offsets[candidate];
+	}
+
+	/**
+	 * Gets the length of a candidate
+	 * 
+	 * @param candidate
+	 *            Number of the candidate
+	 * @return Length of the candidate
+	 */
+	public int getLength(int candidate) {
+		return this.lengths[candidate];
+	}
+
+	/**
+	 * Gets the hash of a candidate, the same as String.hashCode() of it
+	 * 
+	 * @param candidate
+	 *            Number of the candidate
+	 * @return Hash of the candidate
+	 */
+	public int getHash(int candidate) {
+		return this.hashes[candidate];
+	}
+
+	/**
+	 * Adds the characters of the source, leaving out the one at skip if skip
+	 * is not -1, unless they were added before
+	 */
+	private boolean add(char[] source, int sourceLength, int skip, int hash) {
+		int length = (skip < 0) ? sourceLength : sourceLength - 1;
+		int mask = this.table.length - 1;
+		int slot = DeleteIndex.mix(hash) & mask;
+		int candidate;
+		while ((candidate = this.table[slot]) != 0) {
+			candidate--;
+			if (this.hashes[candidate] == hash
+					&& this.lengths[candidate] == length
+					&& this.equals(candidate, source, skip)) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		candidate = this.size;
+		if (candidate == this.offsets.length) {
+			int capacity = candidate * 2;
+			this.offsets = Arrays.copyOf(this.offsets, capacity);
+			this.lengths = Arrays.copyOf(this.lengths, capacity);
+			this.hashes = Arrays.copyOf(this.hashes, capacity);
+			this.slots = Arrays.copyOf(this.slots, capacity);
+		}
+		if (this.charsSize + length > this.chars.length) {
+			this.chars = Arrays.copyOf(this.chars,
+					Math.max(this.charsSize + length, this.chars.length * 2));
+		}
+		if (skip < 0) {
+			System.arraycopy(source, 0, this.chars, this.charsSize, length);
+		} else {
+			System.arraycopy(source, 0, this.chars, this.charsSize, skip);
+			System.arraycopy(source, skip + 1, this.chars, this.charsSize
+					+ skip, length - skip);
+		}
+		this.offsets[candidate] = this.charsSize;
+		this.lengths[candidate] = length;
+		this.hashes[candidate] = hash;
+		this.slots[candidate] = slot;
+		this.table[slot] = candidate + 1;
+		this.charsSize += length;
+		this.size++;
+
+		// Keep the table at most half full
+		if (this.size * 2 > this.table.length) {
+			this.rehash(this.table.length * 2);
+		}
+		return true;
+	}
+
+	/**
+	 * Compares a queued candidate to the source characters without skip
+	 */
+	private boolean equals(int candidate, char[] source, int skip) {
+		int offset = this.offsets[candidate];
+		int length = this.lengths[candidate];
+		for (int x = 0; x < length; x++) {
+			int y = (skip >= 0 && x >= skip) ? x + 1 : x;
+			if (this.chars[offset + x] != source[y]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void rehash(int capacity) {
+		int[] newTable = new int[capacity];
+		int mask = capacity - 1;
+		for (int candidate = 0; candidate < this.size; candidate++) {
+			int slot = DeleteIndex.mix(this.hashes[candidate]) & mask;
+			while (newTable[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			newTable[slot] = candidate + 1;
+			this.slots[candidate] = slot;
+		}
+		this.table = newTable;
+		return;
+	}
+
+	private void ensureBufferCapacity(int length) {
+		if (length > this.buffer.length) {
+			int capacity = Math.max(length, this.buffer.length * 2);
+			this.buffer = new char[capacity];
+			this.prefixes = new int[capacity + 1];
+			this.suffixes = new int[capacity + 1];
+		}
+		return;
+	}
+
+	private void ensurePowers(int length) {
+		if (length > this.powers.length) {
+			int previous = this.powers.length;
+			this.powers = Arrays.copyOf(this.powers,
+					Math.max(length, previous * 2));
+			for (int x = previous; x < this.powers.length; x++) {
+				this.powers[x] = this.powers[x - 1] * 31;
+			}
+		}
+		return;
+	}
+}
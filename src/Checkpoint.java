@@ -0,0 +1,306 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append only record of the files and folders a run is done with, so a run
+ * that was stopped can skip them when it is started again. Each path is kept
+ * as a 64 bit hash written in hex, so the file stays small and a line cut
+ * short by a crash only loses its last hash. The paths done in earlier runs
+ * are read when the checkpoint is opened; paths added later are only written.
+ * The header names the folder the run scanned and the dictionary it corrected
+ * with, and a checkpoint left by a run over another folder or with another
+ * dictionary is discarded rather than resumed.
+ */
+public class Checkpoint implements PathMatcher, Closeable {
+
+	// Start of the header of every checkpoint, followed by its version
+	private static final String MAGIC = "checkpoint ";
+	private static final int VERSION = 2;
+	// How often the checkpoint is forced to the disk; a killed process loses
+	// nothing written, but a crash of the system may lose this much work
+	private static final long SYNC_MILLIS = 5000;
+
+	private final Path file;
+	private final String header;
+	private final FileChannel channel;
+	// Hashes of the paths done in earlier runs, open addressing with 0 as a
+	// free slot
+	private long[] table = new long[64];
+	private int restored = 0;
+	private boolean discarded = false;
+
+	private final StringBuilder pending = new StringBuilder();
+	private long synced = System.currentTimeMillis();
+
+	/**
+	 * Constructor that reads the paths done by earlier runs, if any, and
+	 * opens the checkpoint to add to it
+	 * 
+	 * @param file
+	 *            Checkpoint file, created if it does not exist
+	 * @param root
+	 *            Folder the run scans
+	 * @param dictionary
+	 *            Checksum of the dictionary the run corrects with
+	 * @throws IOException
+	 *             If the file could not be read or opened, or is not a
+	 *             checkpoint file
+	 */
+	Checkpoint(Path file, Path root, long dictionary) throws IOException {
+		this.file = file;
+		this.header = Checkpoint.MAGIC + Checkpoint.VERSION + " "
+				+ Checkpoint.toHex(dictionary) + " "
+				+ root.toAbsolutePath().normalize();
+		if (Files.isRegularFile(file)) {
+			this.read();
+		}
+		if (this.discarded) {
+			// The files done by that run may not be done for this one
+			Files.delete(file);
+		}
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		if (this.channel.size() == 0) {
+			this.write(this.header + "\n");
+		} else if (!this.endsLine()) {
+			// End the line a crash cut short, so the next line stays whole
+			this.write("\n");
+		}
+	}
+
+	/**
+	 * Checks if a file or folder was done by an earlier run
+	 * 
+	 * @param path
+	 *            Path of the file or folder
+	 * @return True if the path is done
+	 */
+	@Override
+	public boolean matches(Path path) {
+		long hash = Checkpoint.hash(path);
+		int mask = this.table.length - 1;
+		int slot = (int) hash & mask;
+		long stored;
+		while ((stored = this.table[slot]) != 0) {
+			if (stored == hash) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the number of files and folders done by earlier runs
+	 * 
+	 * @return Number of paths read from the checkpoint
+	 */
+	public int getRestoredCount() {
+		return this.restored;
+	}
+
+	/**
+	 * Checks if a checkpoint was left by a run over another folder or with
+	 * another dictionary, and so was discarded
+	 * 
+	 * @return True if the checkpoint was discarded
+	 */
+	public boolean isDiscarded() {
+		return this.discarded;
+	}
+
+	/**
+	 * Records a file or folder as done, once the next flush writes it
+	 * 
+	 * @param path
+	 *            Path of the file or folder
+	 */
+	public synchronized void add(Path path) {
+		if (this.pending.length() > 0) {
+			this.pending.append(' ');
+		}
+		this.pending.append(Checkpoint.toHex(Checkpoint.hash(path)));
+		return;
+	}
+
+	/**
+	 * Writes the paths added since the last flush as one line, forcing the
+	 * file to the disk now and then
+	 * 
+	 * @throws IOException
+	 *             If the checkpoint could not be written
+	 */
+	public synchronized void flush() throws IOException {
+		if (this.pending.length() > 0) {
+			this.write(this.pending.append('\n'));
+			this.pending.setLength(0);
+		}
+		long now = System.currentTimeMillis();
+		if (now - this.synced >= SYNC_MILLIS) {
+			this.channel.force(false);
+			this.synced = now;
+		}
+		return;
+	}
+
+	/**
+	 * Flushes and closes the checkpoint, keeping it for the next run
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (this.channel.isOpen()) {
+			this.flush();
+			this.channel.force(false);
+			this.channel.close();
+		}
+		return;
+	}
+
+	/**
+	 * Closes and deletes the checkpoint once the whole run is done
+	 * 
+	 * @throws IOException
+	 *             If the checkpoint could not be deleted
+	 */
+	public synchronized void finish() throws IOException {
+		this.channel.close();
+		Files.deleteIfExists(this.file);
+		return;
+	}
+
+	private void read() throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(this.file,
+				StandardCharsets.UTF_8)) {
+			String line = reader.readLine();
+			if (line == null) {
+				return;
+			}
+			if (!line.startsWith(Checkpoint.MAGIC)) {
+				throw new IOException("Not a checkpoint file: " + this.file);
+			}
+			if (!line.equals(this.header)) {
+				this.discarded = true;
+				return;
+			}
+			while ((line = reader.readLine()) != null) {
+				for (String hex : line.split(" ")) {
+					// A hash cut short by a crash is not used
+					if (hex.length() != 16) {
+						continue;
+					}
+					try {
+						this.put(Long.parseUnsignedLong(hex, 16));
+					} catch (NumberFormatException e) {
+						continue;
+					}
+				}
+			}
+		}
+		return;
+	}
+
+	private boolean endsLine() throws IOException {
+		try (FileChannel in = FileChannel.open(this.file,
+				StandardOpenOption.READ)) {
+			ByteBuffer last = ByteBuffer.allocate(1);
+			in.read(last, in.size() - 1);
+			return last.get(0) == '\n';
+		}
+	}
+
+	private void put(long hash) {
+		int mask = this.table.length - 1;
+		int slot = (int) hash & mask;
+		long stored;
+		while ((stored = this.table[slot]) != 0) {
+			if (stored == hash) {
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		this.table[slot] = hash;
+		this.restored++;
+
+		// Keep the table at most half full
+		if (this.restored * 2 > this.table.length) {
+			long[] old = this.table;
+			this.table = new long[old.length * 2];
+			mask = this.table.length - 1;
+			for (long value : old) {
+				if (value != 0) {
+					slot = (int) value & mask;
+					while (this.table[slot] != 0) {
+						slot = (slot + 1) & mask;
+					}
+					this.table[slot] = value;
+				}
+			}
+		}
+		return;
+	}
+
+	private void write(CharSequence text) throws IOException {
+		ByteBuffer buffer = StandardCharsets.UTF_8.encode(text.toString());
+		while (buffer.hasRemaining()) {
+			this.channel.write(buffer);
+		}
+		return;
+	}
+
+	/**
+	 * Writes a hash as 16 hex digits
+	 */
+	static String toHex(long hash) {
+		String hex = Long.toHexString(hash);
+		StringBuilder padded = new StringBuilder(16);
+		for (int x = hex.length(); x < 16; x++) {
+			padded.append('0');
+		}
+		return padded.append(hex).toString();
+	}
+
+	/**
+	 * Hashes a path with 64 bit FNV-1a followed by a final mix, never giving
+	 * 0 as that marks a free slot
+	 */
+	static long hash(Path path) {
+		String name = path.toString();
+		long hash = 0xCBF29CE484222325L;
+		for (int x = 0; x < name.length(); x++) {
+			hash ^= name.charAt(x);
+			hash *= 0x100000001B3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		return (hash == 0) ? 1 : hash;
+	}
+}
@@ -0,0 +1,350 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a UTF-8 corpus straight from a memory mapped file, one line at a
+ * time. A line is either a single term, which counts once, or a term and its
+ * count separated by a tab. Terms are decoded into a reused character buffer
+ * along with their String.hashCode(), so duplicate and rejected lines never
+ * create a String.
+ */
+public class CorpusReader implements Closeable {
+
+	// Files are mapped a window at a time, so corpora larger than 2GB can be
+	// read and only the lines being parsed have to be mapped
+	private static final int WINDOW_SIZE = 1 << 28;
+
+	// Lines holding longer terms are rejected
+	public static final int MAX_TERM_LENGTH = 1 << 16;
+
+	private final FileChannel channel;
+	private final long size;
+	private MappedByteBuffer window = null;
+	private long windowStart = 0;
+	private int position = 0;
+
+	// Set while skipping a line too long to fit in a window
+	private boolean skipping = false;
+
+	private char[] term = new char[64];
+	private int length = 0;
+	private int hash = 0;
+	private int count = 0;
+	private long lines = 0;
+	private long rejected = 0;
+
+	/**
+	 * Constructor with the corpus file to read
+	 * 
+	 * @param fileName
+	 *            Name of the corpus file
+	 * @throws IOException
+	 *             If the file could not be opened or mapped
+	 */
+	CorpusReader(String fileName) throws IOException {
+		this.channel = FileChannel.open(Paths.get(fileName),
+				StandardOpenOption.READ);
+		try {
+			this.size = this.channel.size();
+			this.map(0);
+		} catch (IOException e) {
+			this.channel.close();
+			throw e;
+		}
+
+		// Skip the byte order mark some editors write at the start
+		if (this.window.limit() >= 3 && (this.window.get(0) & 0xFF) == 0xEF
+				&& (this.window.get(1) & 0xFF) == 0xBB
+				&& (this.window.get(2) & 0xFF) == 0xBF) {
+			this.position = 3;
+		}
+	}
+
+	/**
+	 * Moves to the next line holding a valid term, skipping empty lines, lines
+	 * that are not valid UTF-8 and lines whose count is not a positive number
+	 * 
+	 * @return True if a term was read, false at the end of the file
+	 * @throws IOException
+	 *             If the next part of the file could not be mapped
+	 */
+	public boolean next() throws IOException {
+		int end;
+		while ((end = this.findLineEnd()) >= 0) {
+			int start = this.position;
+			this.position = end + 1;
+			this.lines++;
+			if (this.skipping) {
+				this.skipping = false;
+				this.rejected++;
+			} else if (this.parse(start, end)) {
+				return true;
+			} else {
+				this.rejected++;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the characters of the term read by the last call to next(), which
+	 * are overwritten by the following call
+	 * 
+	 * @return Buffer starting with the term
+	 */
+	public char[] getTerm() {
+		return this.term;
+	}
+
+	/**
+	 * Gets the length of the term read by the last call to next()
+	 * 
+	 * @return Number of characters of the term
+	 */
+	public int getLength() {
+		return this.length;
+	}
+
+	/**
+	 * Gets the hash of the term read by the last call to next()
+	 * 
+	 * @return Hash of the term, as String.hashCode() would compute it
+	 */
+	public int getHash() {
+		return this.hash;
+	}
+
+	/**
+	 * Gets the count of the term read by the last call to next()
+	 * 
+	 * @return Count given on the line, or 1 if the line only holds the term
+	 */
+	public int getCount() {
+		return this.count;
+	}
+
+	/**
+	 * Gets the number of lines read so far
+	 * 
+	 * @return Number of lines, including rejected ones
+	 */
+	public long getLines() {
+		return this.lines;
+	}
+
+	/**
+	 * Gets the number of lines skipped so far because they held no valid term
+	 * 
+	 * @return Number of rejected lines
+	 */
+	public long getRejected() {
+		return this.rejected;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.window = null;
+		this.channel.close();
+		return;
+	}
+
+	/**
+	 * Maps the window starting at a position of the file
+	 * 
+	 * @param start
+	 *            Position in the file
+	 * @throws IOException
+	 *             If the file could not be mapped
+	 */
+	private void map(long start) throws IOException {
+		this.windowStart = start;
+		this.position = 0;
+		this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, start,
+				Math.min(this.size - start, WINDOW_SIZE));
+		return;
+	}
+
+	/**
+	 * Finds the end of the line at the current position, moving the window
+	 * forward when the line continues past it
+	 * 
+	 * @return Position of the line's '\n' in the window, or the window's
+	 *         limit for a last line without one, or -1 at the end of the file
+	 * @throws IOException
+	 *             If the next part of the file could not be mapped
+	 */
+	private int findLineEnd() throws IOException {
+		int from = this.position;
+		while (true) {
+			MappedByteBuffer window = this.window;
+			int limit = window.limit();
+			for (int x = from; x < limit; x++) {
+				if (window.get(x) == '\n') {
+					return x;
+				}
+			}
+
+			long end = this.windowStart + limit;
+			if (end >= this.size) {
+				return (this.position < limit) ? limit : -1;
+			}
+			if (this.position == 0) {
+				// The line fills the whole window, so reject it and carry on
+				// from the end of the window
+				this.skipping = true;
+				this.map(end);
+				from = 0;
+			} else {
+				// Map the window again from the start of the line so the
+				// whole line is in it
+				from = limit - this.position;
+				this.map(this.windowStart + this.position);
+			}
+		}
+	}
+
+	/**
+	 * Decodes the term and count of a line
+	 * 
+	 * @param start
+	 *            Position of the line's first byte in the window
+	 * @param end
+	 *            Position after the line's last byte in the window
+	 * @return True if the line holds a valid term and count
+	 */
+	private boolean parse(int start, int end) {
+		MappedByteBuffer window = this.window;
+		if (end > start && window.get(end - 1) == '\r') {
+			end--;
+		}
+
+		char[] term = this.term;
+		int length = 0;
+		int hash = 0;
+		int x = start;
+		while (x < end) {
+			int b = window.get(x);
+			if (b == '\t') {
+				break;
+			}
+			if (length + 2 > term.length) {
+				if (length >= MAX_TERM_LENGTH) {
+					return false;
+				}
+				term = this.term = Arrays.copyOf(term,
+						term.length * 2);
+			}
+			if (b >= 0) {
+				term[length++] = (char) b;
+				hash = 31 * hash + b;
+				x++;
+				continue;
+			}
+
+			// Multi byte sequence; overlong forms, surrogates and code points
+			// past U+10FFFF are invalid
+			int codePoint;
+			int bytes;
+			if ((b & 0xE0) == 0xC0) {
+				codePoint = b & 0x1F;
+				bytes = 2;
+			} else if ((b & 0xF0) == 0xE0) {
+				codePoint = b & 0x0F;
+				bytes = 3;
+			} else if ((b & 0xF8) == 0xF0) {
+				codePoint = b & 0x07;
+				bytes = 4;
+			} else {
+				return false;
+			}
+			if (x + bytes > end) {
+				return false;
+			}
+			for (int y = 1; y < bytes; y++) {
+				int next = window.get(x + y);
+				if ((next & 0xC0) != 0x80) {
+					return false;
+				}
+				codePoint = (codePoint << 6) | (next & 0x3F);
+			}
+			x += bytes;
+			if (bytes == 2) {
+				if (codePoint < 0x80) {
+					return false;
+				}
+			} else if (bytes == 3) {
+				if (codePoint < 0x800
+						|| Character.isSurrogate((char) codePoint)) {
+					return false;
+				}
+			} else if (codePoint < 0x10000
+					|| codePoint > Character.MAX_CODE_POINT) {
+				return false;
+			}
+			if (bytes < 4) {
+				term[length++] = (char) codePoint;
+				hash = 31 * hash + codePoint;
+			} else {
+				char high = Character.highSurrogate(codePoint);
+				char low = Character.lowSurrogate(codePoint);
+				term[length++] = high;
+				term[length++] = low;
+				hash = 31 * (31 * hash + high) + low;
+			}
+		}
+		if (length == 0 || length > MAX_TERM_LENGTH) {
+			return false;
+		}
+
+		// A count follows the tab; counts too large for an int are clamped
+		long count = 1;
+		if (x < end) {
+			x++;
+			if (x == end) {
+				return false;
+			}
+			count = 0;
+			for (; x < end; x++) {
+				int digit = window.get(x) - '0';
+				if (digit < 0 || digit > 9) {
+					return false;
+				}
+				if (count < Integer.MAX_VALUE) {
+					count = count * 10 + digit;
+				}
+			}
+			if (count == 0) {
+				return false;
+			}
+		}
+
+		this.length = length;
+		this.hash = hash;
+		this.count = (int) Math.min(count, Integer.MAX_VALUE);
+		return true;
+	}
+}
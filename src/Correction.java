@@ -0,0 +1,83 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+/**
+ * The correction of an input, with the number of the dictionary generation
+ * that made it
+ */
+public class Correction {
+
+	private final String input;
+	private final String term;
+	private final long generation;
+
+	/**
+	 * Constructor with all values of the correction
+	 * 
+	 * @param input
+	 *            Input that was corrected
+	 * @param term
+	 *            Corrected term, or the input if it could not be corrected
+	 * @param generation
+	 *            Number of the dictionary generation used
+	 */
+	Correction(String input, String term, long generation) {
+		this.input = input;
+		this.term = term;
+		this.generation = generation;
+	}
+
+	/**
+	 * Gets the input that was corrected
+	 * 
+	 * @return Input
+	 */
+	public String getInput() {
+		return this.input;
+	}
+
+	/**
+	 * Gets the corrected term
+	 * 
+	 * @return Corrected term, or the input if it could not be corrected
+	 */
+	public String getTerm() {
+		return this.term;
+	}
+
+	/**
+	 * Gets the number of the dictionary generation that made the correction
+	 * 
+	 * @return Generation number
+	 */
+	public long getGeneration() {
+		return this.generation;
+	}
+
+	/**
+	 * Gets the correction as a String
+	 * 
+	 * @return Input, corrected term and generation separated by spaces
+	 */
+	@Override
+	public String toString() {
+		return this.input + " " + this.term + " " + this.generation;
+	}
+}
@@ -0,0 +1,274 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size bounded cache of lookup results, so repeated names are only looked up
+ * once. Entries are split over segments that are each locked and evicted in
+ * least recently used order on their own, and every entry records the
+ * dictionary version it was looked up in, so entries from an older
+ * dictionary are never returned.
+ */
+public class CorrectionCache {
+
+	private static final int SEGMENTS = 16;
+
+	private final Segment[] segments = new Segment[CorrectionCache.SEGMENTS];
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Constructor with the number of results to keep
+	 * 
+	 * @param capacity
+	 *            Most results kept at once, at least 1
+	 */
+	CorrectionCache(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be at least 1");
+		}
+		// Spread the capacity over the segments, giving the remainder to the
+		// first ones
+		for (int x = 0; x < this.segments.length; x++) {
+			int segmentCapacity = capacity / this.segments.length
+					+ (x < capacity % this.segments.length ? 1 : 0);
+			this.segments[x] = new Segment(Math.max(segmentCapacity, 1));
+		}
+	}
+
+	/**
+	 * Gets the cached result of a lookup
+	 * 
+	 * @param key
+	 *            Lookup to get the result of
+	 * @param version
+	 *            Version of the dictionary the result must come from
+	 * @return Copy of the cached suggestions, or null if there are none for
+	 *         this version of the dictionary
+	 */
+	public List<SuggestItem> get(Key key, long version) {
+		Entry entry = this.segmentOf(key).get(key, version);
+		if (entry == null) {
+			this.misses.increment();
+			return null;
+		}
+		this.hits.increment();
+		return new ArrayList<SuggestItem>(entry.suggestions);
+	}
+
+	/**
+	 * Caches the result of a lookup
+	 * 
+	 * @param key
+	 *            Lookup the result is for
+	 * @param version
+	 *            Version of the dictionary the result came from
+	 * @param suggestions
+	 *            Suggestions found, which are copied
+	 */
+	public void put(Key key, long version, List<SuggestItem> suggestions) {
+		this.segmentOf(key).put(key, new Entry(version,
+				Collections.unmodifiableList(new ArrayList<SuggestItem>(
+						suggestions))));
+		return;
+	}
+
+	/**
+	 * Removes every cached result, keeping the counts
+	 */
+	public void clear() {
+		for (Segment segment : this.segments) {
+			segment.clear();
+		}
+		return;
+	}
+
+	/**
+	 * Gets the number of results currently cached
+	 * 
+	 * @return Number of cached results
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : this.segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Gets the number of lookups answered from the cache
+	 * 
+	 * @return Number of hits
+	 */
+	public long getHitCount() {
+		return this.hits.sum();
+	}
+
+	/**
+	 * Gets the number of lookups not answered from the cache, including ones
+	 * whose result came from an older dictionary
+	 * 
+	 * @return Number of misses
+	 */
+	public long getMissCount() {
+		return this.misses.sum();
+	}
+
+	/**
+	 * Gets the number of results removed to make room for newer ones
+	 * 
+	 * @return Number of evictions
+	 */
+	public long getEvictionCount() {
+		return this.evictions.sum();
+	}
+
+	/**
+	 * Gets the cache statistics as a String
+	 * 
+	 * @return Size, hit, miss and eviction counts
+	 */
+	@Override
+	public String toString() {
+		return "size=" + this.size() + " hits=" + this.getHitCount()
+				+ " misses=" + this.getMissCount() + " evictions="
+				+ this.getEvictionCount();
+	}
+
+	private Segment segmentOf(Key key) {
+		return this.segments[DeleteIndex.mix(key.hash)
+				& (this.segments.length - 1)];
+	}
+
+	/**
+	 * Lookup a result is cached for, from the input and the options that
+	 * change the result
+	 */
+	public static final class Key {
+
+		private final String input;
+		private final Verbosity verbosity;
+		private final int maxDistance;
+		private final int limit;
+		private final int hash;
+
+		/**
+		 * Constructor with the lookup to cache
+		 * 
+		 * @param input
+		 *            Input that was looked up
+		 * @param verbosity
+		 *            Verbosity of the lookup
+		 * @param maxDistance
+		 *            Largest edit distance of the lookup
+		 * @param limit
+		 *            Most suggestions returned by the lookup
+		 */
+		Key(String input, Verbosity verbosity, int maxDistance, int limit) {
+			this.input = input;
+			this.verbosity = verbosity;
+			this.maxDistance = maxDistance;
+			this.limit = limit;
+			this.hash = ((input.hashCode() * 31 + verbosity.ordinal()) * 31
+					+ maxDistance) * 31 + limit;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) other;
+			return (this.hash == key.hash)
+					&& (this.maxDistance == key.maxDistance)
+					&& (this.limit == key.limit)
+					&& (this.verbosity == key.verbosity)
+					&& this.input.equals(key.input);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+	}
+
+	private static final class Entry {
+
+		private final long version;
+		private final List<SuggestItem> suggestions;
+
+		private Entry(long version, List<SuggestItem> suggestions) {
+			this.version = version;
+			this.suggestions = suggestions;
+		}
+	}
+
+	// Part of the cache with its own lock and least recently used order
+	private final class Segment {
+
+		private final int capacity;
+		// Kept in access order, so the first entry is the least recently used
+		private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(
+				16, 0.75f, true);
+
+		private Segment(int capacity) {
+			this.capacity = capacity;
+		}
+
+		private synchronized Entry get(Key key, long version) {
+			Entry entry = this.entries.get(key);
+			if ((entry != null) && (entry.version != version)) {
+				// Looked up in an older dictionary, so it can't be used again
+				this.entries.remove(key);
+				return null;
+			}
+			return entry;
+		}
+
+		private synchronized void put(Key key, Entry entry) {
+			this.entries.put(key, entry);
+			if (this.entries.size() > this.capacity) {
+				Iterator<Key> eldest = this.entries.keySet().iterator();
+				eldest.next();
+				eldest.remove();
+				CorrectionCache.this.evictions.increment();
+			}
+			return;
+		}
+
+		private synchronized void clear() {
+			this.entries.clear();
+			return;
+		}
+
+		private synchronized int size() {
+			return this.entries.size();
+		}
+	}
+}
@@ -0,0 +1,285 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Journal of the corrections made, one line per correction. Corrections are
+ * put in a bounded ring buffer and written in batches by a background
+ * thread, so correcting threads never wait on the file or on each other.
+ * Each line holds the time in milliseconds, the input, the chosen term, the
+ * distance, the count, and "partial" or "complete" for whether the lookup ran
+ * out of its budget, separated by tabs, with tabs, line breaks and
+ * backslashes in the input and term escaped as in the rename journal.
+ */
+public class CorrectionJournal implements Closeable {
+
+	/**
+	 * What to do with a correction when the buffer is full
+	 */
+	public enum Overflow {
+		/**
+		 * Wait until the writer makes room
+		 */
+		BLOCK,
+		/**
+		 * Drop the new correction
+		 */
+		DROP_NEWEST,
+		/**
+		 * Drop the oldest correction still in the buffer
+		 */
+		DROP_OLDEST
+	}
+
+	// Most corrections written before the file is flushed
+	private static final int BATCH_SIZE = 1024;
+	// How often a waiting writer checks if the journal was closed
+	private static final long POLL_MILLIS = 100;
+
+	private final ArrayBlockingQueue<Entry> buffer;
+	private final Overflow overflow;
+	private final Writer out;
+	private final Thread writer;
+	private volatile boolean closed = false;
+
+	private final LongAdder written = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+
+	/**
+	 * Constructor that starts the background writer
+	 * 
+	 * @param out
+	 *            Where the journal is written, which is closed with the
+	 *            journal
+	 * @param capacity
+	 *            Most corrections buffered before the overflow policy applies
+	 * @param overflow
+	 *            What to do with corrections when the buffer is full
+	 */
+	CorrectionJournal(Writer out, int capacity, Overflow overflow) {
+		this.buffer = new ArrayBlockingQueue<Entry>(capacity);
+		this.overflow = overflow;
+		this.out = new BufferedWriter(out);
+		this.writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				CorrectionJournal.this.drain();
+				return;
+			}
+		}, "correction-journal");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Records a correction
+	 * 
+	 * @param input
+	 *            Input that was corrected
+	 * @param suggestion
+	 *            Suggestion chosen, or null if the input could not be
+	 *            corrected
+	 * @param partial
+	 *            True if the lookup ran out of its budget, so a closer term
+	 *            may have been missed
+	 */
+	public void record(String input, SuggestItem suggestion, boolean partial) {
+		if (this.closed) {
+			this.dropped.increment();
+			return;
+		}
+		Entry entry = (suggestion == null) ? new Entry(
+				System.currentTimeMillis(), input, input, -1, 0, partial)
+				: new Entry(System.currentTimeMillis(), input,
+						suggestion.getTerm(), suggestion.getDistance(),
+						suggestion.getCount(), partial);
+
+		switch (this.overflow) {
+		case BLOCK:
+			// Wait in steps, so a writer that stopped because the journal was
+			// closed can't leave this thread waiting forever
+			try {
+				while (!this.buffer.offer(entry, CorrectionJournal.POLL_MILLIS,
+						TimeUnit.MILLISECONDS)) {
+					if (this.closed) {
+						this.dropped.increment();
+						return;
+					}
+				}
+			} catch (InterruptedException e) {
+				this.dropped.increment();
+				Thread.currentThread().interrupt();
+				return;
+			}
+			break;
+		case DROP_NEWEST:
+			if (!this.buffer.offer(entry)) {
+				this.dropped.increment();
+				return;
+			}
+			break;
+		default:
+			// Make room by dropping the oldest, which another thread may
+			// already have done
+			while (!this.buffer.offer(entry)) {
+				if (this.buffer.poll() != null) {
+					this.dropped.increment();
+				}
+			}
+			break;
+		}
+		// The journal may have been closed after the check above, and its
+		// last drain may have missed this correction. Either a drain took it
+		// and wrote it, or it is taken back here and dropped.
+		if (this.closed && this.buffer.remove(entry)) {
+			this.dropped.increment();
+		}
+		return;
+	}
+
+	/**
+	 * Gets the number of corrections written to the journal
+	 * 
+	 * @return Number of corrections written
+	 */
+	public long getWrittenCount() {
+		return this.written.sum();
+	}
+
+	/**
+	 * Gets the number of corrections dropped because the buffer was full, the
+	 * journal was closed or they could not be written
+	 * 
+	 * @return Number of corrections dropped
+	 */
+	public long getDroppedCount() {
+		return this.dropped.sum();
+	}
+
+	/**
+	 * Writes the corrections still buffered, then stops the writer and
+	 * closes the journal
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		boolean interrupted = false;
+		while (this.writer.isAlive()) {
+			try {
+				this.writer.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		// Write what was buffered after the writer made its last check
+		List<Entry> batch = new ArrayList<Entry>(CorrectionJournal.BATCH_SIZE);
+		StringBuilder line = new StringBuilder();
+		while (this.buffer.drainTo(batch, CorrectionJournal.BATCH_SIZE) > 0) {
+			this.write(batch, line);
+		}
+		this.out.close();
+		return;
+	}
+
+	// Writes batches of corrections until the journal is closed and every
+	// buffered correction is written
+	private void drain() {
+		List<Entry> batch = new ArrayList<Entry>(CorrectionJournal.BATCH_SIZE);
+		StringBuilder line = new StringBuilder();
+		while (!this.closed || !this.buffer.isEmpty()) {
+			try {
+				// Wait for one correction, then take what else is buffered
+				Entry first = this.buffer.poll(CorrectionJournal.POLL_MILLIS,
+						TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+			} catch (InterruptedException e) {
+				continue;
+			}
+			this.buffer.drainTo(batch, CorrectionJournal.BATCH_SIZE - 1);
+			this.write(batch, line);
+		}
+		return;
+	}
+
+	// Writes and flushes a batch of corrections, then clears it. A batch that
+	// fails to write is counted as dropped, as none of it is known to be in
+	// the file.
+	private void write(List<Entry> batch, StringBuilder line) {
+		try {
+			for (Entry entry : batch) {
+				line.setLength(0);
+				line.append(entry.time).append('\t');
+				RenamePlanner.escape(line, entry.input);
+				line.append('\t');
+				RenamePlanner.escape(line, entry.term);
+				line.append('\t').append(entry.distance).append('\t')
+						.append(entry.count).append('\t')
+						.append(entry.partial ? "partial" : "complete")
+						.append('\n');
+				this.out.append(line);
+			}
+			this.out.flush();
+			this.written.add(batch.size());
+		} catch (IOException e) {
+			this.dropped.add(batch.size());
+			e.printStackTrace();
+		}
+		batch.clear();
+		return;
+	}
+
+	private static final class Entry {
+
+		private final long time;
+		private final String input;
+		private final String term;
+		private final int distance;
+		private final int count;
+		private final boolean partial;
+
+		private Entry(long time, String input, String term, int distance,
+				int count, boolean partial) {
+			this.time = time;
+			this.input = input;
+			this.term = term;
+			this.distance = distance;
+			this.count = count;
+			this.partial = partial;
+		}
+	}
+}
@@ -0,0 +1,964 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Symmetric delete index used by SymSpell. Every key (a dictionary term or one
+ * of its deletes) is an entry in an open addressing table keyed by the key's
+ * hash. Key characters and suggestion lists live in shared primitive pools so
+ * no per-entry objects or boxed integers are created.
+ */
+public class DeleteIndex implements IndexView {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	// Open addressing table holding entry number + 1, 0 marks a free slot
+	private int[] table = new int[INITIAL_CAPACITY * 2];
+	private int entries = 0;
+
+	// Per-entry columns, indexed by entry number
+	private int[] hashes = new int[INITIAL_CAPACITY];
+	private int[] keyOffsets = new int[INITIAL_CAPACITY];
+	private int[] keyLengths = new int[INITIAL_CAPACITY];
+	private int[] listOffsets = new int[INITIAL_CAPACITY];
+	private int[] listSizes = new int[INITIAL_CAPACITY];
+	private int[] termIds = new int[INITIAL_CAPACITY];
+
+	// Shared pools for key characters and suggestion lists
+	private char[] keyPool = new char[INITIAL_CAPACITY * 8];
+	private int keyPoolSize = 0;
+	private int[] listPool = new int[INITIAL_CAPACITY * 2];
+	private int listPoolSize = 0;
+
+	// Dictionary terms and their counts, indexed by term id
+	private List<String> terms = new ArrayList<String>();
+	private int[] counts = new int[INITIAL_CAPACITY];
+	private int maxLength = 0;
+
+	// Set once the index is published to readers
+	private boolean frozen = false;
+
+	/**
+	 * Constructor for an empty index
+	 */
+	DeleteIndex() {
+	}
+
+	/**
+	 * Constructor with the columns of an index read back from the layout
+	 * written by write(), which are copied so the index can still grow
+	 * 
+	 * @param table
+	 *            Open addressing table holding entry number + 1
+	 * @param hashes
+	 *            Hash of each entry's key
+	 * @param keyOffsets
+	 *            Start of each entry's key in the key pool
+	 * @param keyLengths
+	 *            Length of each entry's key
+	 * @param listOffsets
+	 *            Start of each entry's suggestions in the suggestion pool, or
+	 *            the suggestion itself when there is only one
+	 * @param listSizes
+	 *            Number of suggestions of each entry
+	 * @param termIds
+	 *            Term id of each entry, or -1 for deletes
+	 * @param keyPool
+	 *            Characters of all keys
+	 * @param listPool
+	 *            Suggestion lists of all entries
+	 * @param terms
+	 *            Dictionary terms, indexed by term id
+	 * @param counts
+	 *            Count of each term
+	 * @param maxLength
+	 *            Length of the longest term
+	 */
+	DeleteIndex(int[] table, int[] hashes, int[] keyOffsets,
+			int[] keyLengths, int[] listOffsets, int[] listSizes,
+			int[] termIds, char[] keyPool, int[] listPool, List<String> terms,
+			int[] counts, int maxLength) {
+		this.table = table.clone();
+		this.entries = hashes.length;
+		this.hashes = DeleteIndex.copyOf(hashes);
+		this.keyOffsets = DeleteIndex.copyOf(keyOffsets);
+		this.keyLengths = DeleteIndex.copyOf(keyLengths);
+		this.listOffsets = DeleteIndex.copyOf(listOffsets);
+		this.listSizes = DeleteIndex.copyOf(listSizes);
+		this.termIds = DeleteIndex.copyOf(termIds);
+		this.keyPool = Arrays.copyOf(keyPool, Math.max(1, keyPool.length));
+		this.keyPoolSize = keyPool.length;
+		this.listPool = Arrays.copyOf(listPool, Math.max(1, listPool.length));
+		this.listPoolSize = listPool.length;
+		this.terms = new ArrayList<String>(terms);
+		this.counts = DeleteIndex.copyOf(counts);
+		this.maxLength = maxLength;
+	}
+
+	/**
+	 * Joins indexes whose keys don't overlap into one index, such as the
+	 * partitions of partition(). Columns and pools are copied as blocks and
+	 * only the open addressing table is filled entry by entry.
+	 * 
+	 * @param parts
+	 *            Indexes to join, whose term ids already refer to the terms
+	 * @param terms
+	 *            Index holding the terms and counts of the joined index
+	 * @return New index holding the entries of every part
+	 */
+	static DeleteIndex join(DeleteIndex[] parts, DeleteIndex terms) {
+		int entries = 0;
+		int keys = 0;
+		int lists = 0;
+		for (DeleteIndex part : parts) {
+			entries += part.entries;
+			keys += part.keyPoolSize;
+			lists += part.listPoolSize;
+		}
+
+		DeleteIndex joined = new DeleteIndex();
+		int capacity = Math.max(INITIAL_CAPACITY, entries);
+		joined.hashes = new int[capacity];
+		joined.keyOffsets = new int[capacity];
+		joined.keyLengths = new int[capacity];
+		joined.listOffsets = new int[capacity];
+		joined.listSizes = new int[capacity];
+		joined.termIds = new int[capacity];
+		joined.keyPool = new char[Math.max(1, keys)];
+		joined.listPool = new int[Math.max(1, lists)];
+		for (DeleteIndex part : parts) {
+			int entry = joined.entries;
+			int count = part.entries;
+			System.arraycopy(part.hashes, 0, joined.hashes, entry, count);
+			System.arraycopy(part.keyLengths, 0, joined.keyLengths, entry,
+					count);
+			System.arraycopy(part.listSizes, 0, joined.listSizes, entry,
+					count);
+			System.arraycopy(part.termIds, 0, joined.termIds, entry, count);
+			for (int x = 0; x < count; x++) {
+				joined.keyOffsets[entry + x] = part.keyOffsets[x]
+						+ joined.keyPoolSize;
+				// A single suggestion is stored inline and is not moved
+				joined.listOffsets[entry + x] = (part.listSizes[x] == 1) ? part.listOffsets[x]
+						: part.listOffsets[x] + joined.listPoolSize;
+			}
+			System.arraycopy(part.keyPool, 0, joined.keyPool,
+					joined.keyPoolSize, part.keyPoolSize);
+			System.arraycopy(part.listPool, 0, joined.listPool,
+					joined.listPoolSize, part.listPoolSize);
+			joined.entries += count;
+			joined.keyPoolSize += part.keyPoolSize;
+			joined.listPoolSize += part.listPoolSize;
+		}
+
+		joined.rehash(DeleteIndex.tableSize(entries));
+
+		joined.terms = new ArrayList<String>(terms.terms);
+		joined.counts = DeleteIndex.copyOf(terms.counts);
+		joined.maxLength = terms.maxLength;
+		return joined;
+	}
+
+	/**
+	 * Gets the size of the open addressing table of an index, the same as
+	 * inserting its entries one by one would reach
+	 * 
+	 * @param entries
+	 *            Number of entries in the index
+	 * @return Number of table slots
+	 */
+	static int tableSize(int entries) {
+		int tableSize = INITIAL_CAPACITY * 2;
+		while ((long) entries * 4 > (long) tableSize * 3) {
+			tableSize *= 2;
+		}
+		return tableSize;
+	}
+
+	/**
+	 * Gets the partition a key belongs to when keys are split by hash, so
+	 * each partition can be built on its own and joined afterwards
+	 * 
+	 * @param hash
+	 *            Hash of the key, as String.hashCode() would compute it
+	 * @param partitions
+	 *            Number of partitions
+	 * @return Partition of the key, from 0 to partitions - 1
+	 */
+	static int partition(int hash, int partitions) {
+		return (int) (((DeleteIndex.mix(hash) & 0xFFFFFFFFL) * partitions) >>> 32);
+	}
+
+	/**
+	 * Gets the hash of an entry's key
+	 * 
+	 * @param entry
+	 *            Entry number
+	 * @return Hash of the key, as String.hashCode() would compute it
+	 */
+	@Override
+	public int getHash(int entry) {
+		return this.hashes[entry];
+	}
+
+	/**
+	 * Stops any further changes to the index, so it can be shared with other
+	 * threads without locking. Spare capacity is released.
+	 * 
+	 * @return This index
+	 */
+	public DeleteIndex freeze() {
+		if (!this.frozen) {
+			this.hashes = Arrays.copyOf(this.hashes, this.entries);
+			this.keyOffsets = Arrays.copyOf(this.keyOffsets, this.entries);
+			this.keyLengths = Arrays.copyOf(this.keyLengths, this.entries);
+			this.listOffsets = Arrays.copyOf(this.listOffsets, this.entries);
+			this.listSizes = Arrays.copyOf(this.listSizes, this.entries);
+			this.termIds = Arrays.copyOf(this.termIds, this.entries);
+			this.keyPool = Arrays.copyOf(this.keyPool, this.keyPoolSize);
+			this.listPool = Arrays.copyOf(this.listPool, this.listPoolSize);
+			this.counts = Arrays.copyOf(this.counts, this.terms.size());
+			((ArrayList<String>) this.terms).trimToSize();
+			this.frozen = true;
+		}
+		return this;
+	}
+
+	/**
+	 * Checks if the index can no longer be changed
+	 * 
+	 * @return True if the index is frozen
+	 */
+	public boolean isFrozen() {
+		return this.frozen;
+	}
+
+	/**
+	 * Makes a changeable copy of the index
+	 * 
+	 * @return Copy of the index that is not frozen
+	 */
+	public DeleteIndex copy() {
+		DeleteIndex copy = new DeleteIndex();
+		copy.table = this.table.clone();
+		copy.entries = this.entries;
+		copy.hashes = DeleteIndex.copyOf(this.hashes);
+		copy.keyOffsets = DeleteIndex.copyOf(this.keyOffsets);
+		copy.keyLengths = DeleteIndex.copyOf(this.keyLengths);
+		copy.listOffsets = DeleteIndex.copyOf(this.listOffsets);
+		copy.listSizes = DeleteIndex.copyOf(this.listSizes);
+		copy.termIds = DeleteIndex.copyOf(this.termIds);
+		copy.keyPool = Arrays.copyOf(this.keyPool,
+				Math.max(1, this.keyPool.length));
+		copy.keyPoolSize = this.keyPoolSize;
+		copy.listPool = Arrays.copyOf(this.listPool,
+				Math.max(1, this.listPool.length));
+		copy.listPoolSize = this.listPoolSize;
+		copy.terms = new ArrayList<String>(this.terms);
+		copy.counts = DeleteIndex.copyOf(this.counts);
+		copy.maxLength = this.maxLength;
+		return copy;
+	}
+
+	/**
+	 * Finds the entry of a key
+	 * 
+	 * @param key
+	 *            Term or delete to find
+	 * @return Entry number of the key, or -1 if the key is not in the index
+	 */
+	@Override
+	public int find(String key) {
+		int hash = key.hashCode();
+		int mask = this.table.length - 1;
+		int slot = DeleteIndex.mix(hash) & mask;
+		int entry;
+		while ((entry = this.table[slot]) != 0) {
+			entry--;
+			if (this.hashes[entry] == hash && this.keyEquals(entry, key)) {
+				return entry;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	@Override
+	public int find(char[] key, int offset, int length, int hash) {
+		int mask = this.table.length - 1;
+		int slot = DeleteIndex.mix(hash) & mask;
+		int entry;
+		while ((entry = this.table[slot]) != 0) {
+			entry--;
+			if (this.hashes[entry] == hash
+					&& this.keyEquals(entry, key, offset, length)) {
+				return entry;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds the key of one of this index's entries in another index
+	 * 
+	 * @param target
+	 *            Index to find the key in
+	 * @param entry
+	 *            Entry number of the key in this index
+	 * @return Entry number of the key in the target index, or -1 if the key is
+	 *         not in it
+	 */
+	public int findIn(IndexView target, int entry) {
+		return target.find(this.keyPool, this.keyOffsets[entry],
+				this.keyLengths[entry], this.hashes[entry]);
+	}
+
+	/**
+	 * Finds the entry of a key, adding a new empty entry if the key is not in
+	 * the index yet
+	 * 
+	 * @param key
+	 *            Term or delete to insert
+	 * @return Entry number of the key
+	 */
+	public int insert(String key) {
+		int hash = key.hashCode();
+		int mask = this.table.length - 1;
+		int slot = DeleteIndex.mix(hash) & mask;
+		int entry;
+		while ((entry = this.table[slot]) != 0) {
+			entry--;
+			if (this.hashes[entry] == hash && this.keyEquals(entry, key)) {
+				return entry;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		// Key was not found, so append a new entry and claim the free slot
+		this.checkNotFrozen();
+		this.ensureKeyPoolCapacity(this.keyPoolSize + key.length());
+		key.getChars(0, key.length(), this.keyPool, this.keyPoolSize);
+		return this.append(slot, hash, key.length());
+	}
+
+	/**
+	 * Finds the entry of a key given as a range of characters, adding a new
+	 * empty entry if the key is not in the index yet
+	 * 
+	 * @param key
+	 *            Characters holding the key
+	 * @param offset
+	 *            Start of the key in the characters
+	 * @param length
+	 *            Length of the key
+	 * @param hash
+	 *            Hash of the key, as String.hashCode() would compute it
+	 * @return Entry number of the key
+	 */
+	public int insert(char[] key, int offset, int length, int hash) {
+		int mask = this.table.length - 1;
+		int slot = DeleteIndex.mix(hash) & mask;
+		int entry;
+		while ((entry = this.table[slot]) != 0) {
+			entry--;
+			if (this.hashes[entry] == hash
+					&& this.keyEquals(entry, key, offset, length)) {
+				return entry;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		// Key was not found, so append a new entry and claim the free slot
+		this.checkNotFrozen();
+		this.ensureKeyPoolCapacity(this.keyPoolSize + length);
+		System.arraycopy(key, offset, this.keyPool, this.keyPoolSize, length);
+		return this.append(slot, hash, length);
+	}
+
+	/**
+	 * Finds the entry of another index's key in this index, adding a new empty
+	 * entry if the key is not in this index yet
+	 * 
+	 * @param source
+	 *            Index holding the key
+	 * @param sourceEntry
+	 *            Entry number of the key in the source index
+	 * @return Entry number of the key in this index
+	 */
+	public int insert(DeleteIndex source, int sourceEntry) {
+		return this.insert(source.keyPool, source.keyOffsets[sourceEntry],
+				source.keyLengths[sourceEntry], source.hashes[sourceEntry]);
+	}
+
+	/**
+	 * Adds an entry of another index to this index: its key if it is new, its
+	 * term id if it is a term, and its suggestions after the ones this index
+	 * already has
+	 * 
+	 * @param source
+	 *            Index holding the entry
+	 * @param sourceEntry
+	 *            Entry number in the source index
+	 * @param firstTerm
+	 *            Amount the source's term ids are moved up by
+	 * @return Entry number of the key in this index
+	 */
+	public int copyEntry(DeleteIndex source, int sourceEntry, int firstTerm) {
+		int entry = this.insert(source, sourceEntry);
+		if (source.termIds[sourceEntry] >= 0) {
+			this.termIds[entry] = firstTerm + source.termIds[sourceEntry];
+		}
+		int size = source.listSizes[sourceEntry];
+		for (int x = 0; x < size; x++) {
+			this.addSuggestion(entry,
+					firstTerm + source.getSuggestion(sourceEntry, x));
+		}
+		return entry;
+	}
+
+	/**
+	 * Marks an entry as a dictionary term and assigns it a new term id
+	 * 
+	 * @param entry
+	 *            Entry number of the term's own key
+	 * @param term
+	 *            Term stored under the entry
+	 * @return Id of the new term, with a count of 0
+	 */
+	public int addTerm(int entry, String term) {
+		this.checkNotFrozen();
+		int termId = this.terms.size();
+		this.terms.add(term);
+		if (termId == this.counts.length) {
+			this.counts = Arrays.copyOf(this.counts, termId * 2);
+		}
+		this.counts[termId] = 0;
+		this.termIds[entry] = termId;
+		if (term.length() > this.maxLength) {
+			this.maxLength = term.length();
+		}
+		return termId;
+	}
+
+	/**
+	 * Gets the term id stored under an entry
+	 * 
+	 * @param entry
+	 *            Entry number
+	 * @return Term id, or -1 if the entry is only a delete
+	 */
+	@Override
+	public int getTermId(int entry) {
+		return this.termIds[entry];
+	}
+
+	/**
+	 * Gets a term by its id
+	 * 
+	 * @param termId
+	 *            Id of the term
+	 * @return The term
+	 */
+	@Override
+	public String getTerm(int termId) {
+		return this.terms.get(termId);
+	}
+
+	/**
+	 * Gets the count of a term
+	 * 
+	 * @param termId
+	 *            Id of the term
+	 * @return How many times the term was added
+	 */
+	@Override
+	public int getCount(int termId) {
+		return this.counts[termId];
+	}
+
+	/**
+	 * Sets the count of a term
+	 * 
+	 * @param termId
+	 *            Id of the term
+	 * @param count
+	 *            New count of the term
+	 */
+	public void setCount(int termId, int count) {
+		this.checkNotFrozen();
+		this.counts[termId] = count;
+		return;
+	}
+
+	/**
+	 * Gets the length of an entry's key
+	 * 
+	 * @param entry
+	 *            Entry number
+	 * @return Length of the key
+	 */
+	@Override
+	public int getKeyLength(int entry) {
+		return this.keyLengths[entry];
+	}
+
+	@Override
+	public void getKey(int entry, char[] chars) {
+		System.arraycopy(this.keyPool, this.keyOffsets[entry], chars, 0,
+				this.keyLengths[entry]);
+		return;
+	}
+
+	/**
+	 * Gets the number of suggestions stored under an entry
+	 * 
+	 * @param entry
+	 *            Entry number
+	 * @return Number of suggestions
+	 */
+	@Override
+	public int getSuggestionCount(int entry) {
+		return this.listSizes[entry];
+	}
+
+	/**
+	 * Gets a suggestion stored under an entry
+	 * 
+	 * @param entry
+	 *            Entry number
+	 * @param index
+	 *            Position of the suggestion in the entry's list
+	 * @return Term id of the suggestion
+	 */
+	@Override
+	public int getSuggestion(int entry, int index) {
+		// A single suggestion is stored inline instead of in the pool
+		if (this.listSizes[entry] == 1) {
+			return this.listOffsets[entry];
+		}
+		return this.listPool[this.listOffsets[entry] + index];
+	}
+
+	/**
+	 * Checks if a term is already a suggestion of an entry
+	 * 
+	 * @param entry
+	 *            Entry number
+	 * @param termId
+	 *            Term id to look for
+	 * @return True if the term is in the entry's suggestions
+	 */
+	public boolean containsSuggestion(int entry, int termId) {
+		int size = this.listSizes[entry];
+		for (int x = 0; x < size; x++) {
+			if (this.getSuggestion(entry, x) == termId) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Appends a suggestion to an entry
+	 * 
+	 * @param entry
+	 *            Entry number
+	 * @param termId
+	 *            Term id of the suggestion
+	 */
+	public void addSuggestion(int entry, int termId) {
+		this.checkNotFrozen();
+		int size = this.listSizes[entry];
+		if (size == 0) {
+			this.listOffsets[entry] = termId;
+		} else {
+			// Lists grow in power of two blocks, so a new block is only needed
+			// when the current one is full
+			if (size == 1 || Integer.bitCount(size) == 1) {
+				int offset = this.listPoolSize;
+				this.ensureListPoolCapacity(offset + size * 2);
+				if (size == 1) {
+					this.listPool[offset] = this.listOffsets[entry];
+				} else {
+					System.arraycopy(this.listPool, this.listOffsets[entry],
+							this.listPool, offset, size);
+				}
+				this.listOffsets[entry] = offset;
+				this.listPoolSize += size * 2;
+			}
+			this.listPool[this.listOffsets[entry] + size] = termId;
+		}
+		this.listSizes[entry] = size + 1;
+		return;
+	}
+
+	/**
+	 * Removes all suggestions of an entry
+	 * 
+	 * @param entry
+	 *            Entry number
+	 */
+	public void clearSuggestions(int entry) {
+		this.checkNotFrozen();
+		this.listSizes[entry] = 0;
+		return;
+	}
+
+	/**
+	 * Gets the number of entries (terms and deletes) in the index
+	 * 
+	 * @return Number of entries
+	 */
+	@Override
+	public int size() {
+		return this.entries;
+	}
+
+	/**
+	 * Gets the number of terms in the index
+	 * 
+	 * @return Number of terms
+	 */
+	@Override
+	public int getTermCount() {
+		return this.terms.size();
+	}
+
+	/**
+	 * Gets the length of the longest term
+	 * 
+	 * @return Length of the longest term
+	 */
+	@Override
+	public int getMaxLength() {
+		return this.maxLength;
+	}
+
+	/**
+	 * Estimates the heap used by this index
+	 * 
+	 * @return Estimated size in bytes
+	 */
+	public long estimatedBytes() {
+		long bytes = 4L * this.table.length;
+		bytes += 4L * 6 * this.hashes.length;
+		bytes += 2L * this.keyPool.length;
+		bytes += 4L * this.listPool.length;
+		bytes += 4L * this.counts.length;
+		// Term Strings are shared with the term list
+		bytes += 8L * this.terms.size();
+		for (String term : this.terms) {
+			bytes += DeleteIndex.stringBytes(term.length());
+		}
+		return bytes;
+	}
+
+	/**
+	 * Estimates the heap the same contents would use in a
+	 * HashMap<String, Object> holding Integers and suggestion ArrayLists, as
+	 * SymSpell used before this index
+	 * 
+	 * @return Estimated size in bytes
+	 */
+	public long estimatedMapBytes() {
+		// Table array sized to the next power of two over the load factor
+		long bytes = 16 + 4L * Integer.highestOneBit(this.entries * 4 / 3 + 1)
+				* 2;
+		for (int entry = 0; entry < this.entries; entry++) {
+			// HashMap node and key String
+			bytes += 32 + DeleteIndex.stringBytes(this.keyLengths[entry]);
+			int size = this.listSizes[entry];
+			if (this.termIds[entry] < 0 && size == 1) {
+				// Lone suggestions were stored as a boxed Integer
+				bytes += 16;
+			} else {
+				// dictionaryItem, its ArrayList and backing Object[], and a
+				// boxed Integer per suggestion
+				bytes += 24 + 24 + DeleteIndex.align(16 + 4L * Math.max(10, size))
+						+ 16L * size;
+			}
+		}
+		// Word list ArrayList sharing the key Strings
+		bytes += 24 + 16 + 4L * this.terms.size();
+		return bytes;
+	}
+
+	private void checkNotFrozen() {
+		if (this.frozen) {
+			throw new IllegalStateException("Index is frozen");
+		}
+		return;
+	}
+
+	/**
+	 * Copies a column, keeping room to grow even if it was trimmed empty
+	 */
+	private static int[] copyOf(int[] values) {
+		return Arrays.copyOf(values, Math.max(INITIAL_CAPACITY, values.length));
+	}
+
+	/**
+	 * Adds a new entry whose key was just copied to the end of the key pool
+	 */
+	private int append(int slot, int hash, int length) {
+		int entry = this.entries;
+		this.ensureEntryCapacity(entry + 1);
+		this.hashes[entry] = hash;
+		this.keyOffsets[entry] = this.keyPoolSize;
+		this.keyLengths[entry] = length;
+		this.listOffsets[entry] = 0;
+		this.listSizes[entry] = 0;
+		this.termIds[entry] = -1;
+		this.keyPoolSize += length;
+		this.entries++;
+		this.table[slot] = entry + 1;
+
+		// Keep the table at most three quarters full
+		if (this.entries * 4 > this.table.length * 3) {
+			this.rehash(this.table.length * 2);
+		}
+		return entry;
+	}
+
+	/**
+	 * Gets the number of bytes write() produces for this index
+	 * 
+	 * @return Size of the index file in bytes
+	 */
+	public long writtenBytes() {
+		long ints = DeleteIndex.padded(this.table.length) + 6
+				* DeleteIndex.padded(this.entries) + 2
+				* DeleteIndex.padded(this.terms.size())
+				+ DeleteIndex.padded(this.listPoolSize);
+		return MappedIndex.HEADER_SIZE + 4 * ints + 2L * this.keyPoolSize;
+	}
+
+	/**
+	 * Writes the index in the layout read by MappedIndex
+	 * 
+	 * @param channel
+	 *            Channel to write the index file to
+	 * @param editDistanceMax
+	 *            Maximum edit distance the deletes were generated for
+	 * @param prefixLength
+	 *            Length of the term prefixes the deletes were generated from,
+	 *            or 0 for whole terms
+	 * @param folded
+	 *            True if the terms were folded to lower case
+	 * @param checksum
+	 *            Checksum of the corpus the index was built from
+	 * @throws IOException
+	 *             If the index could not be written
+	 */
+	public void write(WritableByteChannel channel, int editDistanceMax,
+			int prefixLength, boolean folded, long checksum)
+			throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(
+				ByteOrder.LITTLE_ENDIAN);
+
+		// Header
+		buffer.putInt(MappedIndex.MAGIC);
+		buffer.putInt(MappedIndex.VERSION);
+		buffer.putInt(editDistanceMax);
+		buffer.putInt(this.maxLength);
+		buffer.putLong(checksum);
+		buffer.putInt(this.terms.size());
+		buffer.putInt(this.entries);
+		buffer.putInt(this.table.length);
+		buffer.putInt(this.keyPoolSize);
+		buffer.putInt(this.listPoolSize);
+		buffer.putInt(prefixLength);
+		buffer.putInt(folded ? MappedIndex.FOLDED : 0);
+		while (buffer.position() < MappedIndex.HEADER_SIZE) {
+			buffer.put((byte) 0);
+		}
+
+		// Term ids are resolved back to the entry holding the term's key
+		int[] termEntries = new int[this.terms.size()];
+		for (int entry = 0; entry < this.entries; entry++) {
+			if (this.termIds[entry] >= 0) {
+				termEntries[this.termIds[entry]] = entry;
+			}
+		}
+
+		DeleteIndex.write(channel, buffer, this.table, this.table.length);
+		DeleteIndex.write(channel, buffer, this.hashes, this.entries);
+		DeleteIndex.write(channel, buffer, this.keyOffsets, this.entries);
+		DeleteIndex.write(channel, buffer, this.keyLengths, this.entries);
+		DeleteIndex.write(channel, buffer, this.listOffsets, this.entries);
+		DeleteIndex.write(channel, buffer, this.listSizes, this.entries);
+		DeleteIndex.write(channel, buffer, this.termIds, this.entries);
+		DeleteIndex.write(channel, buffer, this.counts, this.terms.size());
+		DeleteIndex.write(channel, buffer, termEntries, this.terms.size());
+		DeleteIndex.write(channel, buffer, this.listPool, this.listPoolSize);
+		for (int x = 0; x < this.keyPoolSize; x++) {
+			if (buffer.remaining() < 2) {
+				DeleteIndex.flush(channel, buffer);
+			}
+			buffer.putChar(this.keyPool[x]);
+		}
+		DeleteIndex.flush(channel, buffer);
+		return;
+	}
+
+	/**
+	 * Writes the first values of an array, padded to a multiple of 8 bytes so
+	 * every section of the file stays aligned
+	 */
+	private static void write(WritableByteChannel channel, ByteBuffer buffer,
+			int[] values, int length) throws IOException {
+		for (int x = 0; x < length; x++) {
+			if (buffer.remaining() < 4) {
+				DeleteIndex.flush(channel, buffer);
+			}
+			buffer.putInt(values[x]);
+		}
+		if ((length & 1) != 0) {
+			if (buffer.remaining() < 4) {
+				DeleteIndex.flush(channel, buffer);
+			}
+			buffer.putInt(0);
+		}
+		return;
+	}
+
+	/**
+	 * Gets the number of ints an array section takes once padded
+	 */
+	private static long padded(int length) {
+		return length + (length & 1);
+	}
+
+	private static void flush(WritableByteChannel channel, ByteBuffer buffer)
+			throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+		return;
+	}
+
+	/**
+	 * Compares the characters of an entry's key to a range of characters
+	 */
+	private boolean keyEquals(int entry, char[] key, int offset, int length) {
+		if (this.keyLengths[entry] != length) {
+			return false;
+		}
+		int keyOffset = this.keyOffsets[entry];
+		for (int x = 0; x < length; x++) {
+			if (this.keyPool[keyOffset + x] != key[offset + x]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compares the characters of an entry's key to a String
+	 */
+	private boolean keyEquals(int entry, String key) {
+		int length = this.keyLengths[entry];
+		if (length != key.length()) {
+			return false;
+		}
+		int offset = this.keyOffsets[entry];
+		for (int x = 0; x < length; x++) {
+			if (this.keyPool[offset + x] != key.charAt(x)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Rebuilds the open addressing table with a new capacity
+	 */
+	private void rehash(int capacity) {
+		int[] newTable = new int[capacity];
+		int mask = capacity - 1;
+		for (int entry = 0; entry < this.entries; entry++) {
+			int slot = DeleteIndex.mix(this.hashes[entry]) & mask;
+			while (newTable[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			newTable[slot] = entry + 1;
+		}
+		this.table = newTable;
+		return;
+	}
+
+	private void ensureEntryCapacity(int capacity) {
+		if (capacity > this.hashes.length) {
+			int newCapacity = this.hashes.length * 2;
+			this.hashes = Arrays.copyOf(this.hashes, newCapacity);
+			this.keyOffsets = Arrays.copyOf(this.keyOffsets, newCapacity);
+			this.keyLengths = Arrays.copyOf(this.keyLengths, newCapacity);
+			this.listOffsets = Arrays.copyOf(this.listOffsets, newCapacity);
+			this.listSizes = Arrays.copyOf(this.listSizes, newCapacity);
+			this.termIds = Arrays.copyOf(this.termIds, newCapacity);
+		}
+		return;
+	}
+
+	private void ensureKeyPoolCapacity(int capacity) {
+		if (capacity > this.keyPool.length) {
+			this.keyPool = Arrays.copyOf(this.keyPool,
+					Math.max(capacity, this.keyPool.length * 2));
+		}
+		return;
+	}
+
+	private void ensureListPoolCapacity(int capacity) {
+		if (capacity > this.listPool.length) {
+			this.listPool = Arrays.copyOf(this.listPool,
+					Math.max(capacity, this.listPool.length * 2));
+		}
+		return;
+	}
+
+	/**
+	 * Spreads the bits of a String hash so similar keys do not cluster. Saved
+	 * index files depend on it, so changing it needs a new file version.
+	 */
+	static int mix(int hash) {
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Approximate heap size of a Latin-1 String of the given length
+	 */
+	private static long stringBytes(int length) {
+		return 24 + DeleteIndex.align(16 + length);
+	}
+
+	private static long align(long bytes) {
+		return (bytes + 7) & ~7L;
+	}
+}
@@ -0,0 +1,523 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+import java.util.Arrays;
+
+/**
+ * Index of the terms added to a dictionary since its base index was built,
+ * which is only ever appended to. Lookups read it through snapshots that end
+ * at the entries and terms it had when the snapshot was taken, so publishing
+ * an added term costs about as much as adding its deletes. Everything a
+ * snapshot reads is written before the snapshot is taken and never changed:
+ * table slots and suggestion slots are filled once, arrays are copied when
+ * they grow, and whatever a snapshot finds past its end is skipped. Only one
+ * thread may add to the index at a time.
+ */
+public class DeltaIndex {
+
+	private static final int INITIAL_CAPACITY = 16;
+	// Slots of the first block of a suggestion list; later blocks double
+	private static final int FIRST_BLOCK = 2;
+
+	// Open addressing table holding entry number + 1, 0 marks a free slot
+	private int[] table = new int[INITIAL_CAPACITY * 2];
+	private int entries = 0;
+
+	// Per-entry columns, indexed by entry number
+	private int[] hashes = new int[INITIAL_CAPACITY];
+	private int[] keyOffsets = new int[INITIAL_CAPACITY];
+	private int[] keyLengths = new int[INITIAL_CAPACITY];
+	private int[] termIds = new int[INITIAL_CAPACITY];
+	// Offset + 1 of the first block of each entry's suggestions, 0 for none
+	private int[] lists = new int[INITIAL_CAPACITY];
+	// Offset of the last block of each entry's suggestions and the slots of
+	// it in use, which only the writer reads
+	private int[] tails = new int[INITIAL_CAPACITY];
+	private int[] tailSizes = new int[INITIAL_CAPACITY];
+
+	// Characters of all keys
+	private char[] keyPool = new char[INITIAL_CAPACITY * 8];
+	private int keyPoolSize = 0;
+	// Blocks of suggestions, each made of the offset + 1 of the next block or
+	// 0, the number of slots, and the slots holding term id + 1 or 0 if free
+	private int[] listPool = new int[INITIAL_CAPACITY * 4];
+	private int listPoolSize = 0;
+
+	// Added terms and the count each was added with, indexed by term id;
+	// later count changes are kept by the overlay
+	private String[] terms = new String[INITIAL_CAPACITY];
+	private int[] counts = new int[INITIAL_CAPACITY];
+	private int termCount = 0;
+	private int maxLength = 0;
+
+	/**
+	 * Takes a snapshot of the index, which later additions don't change
+	 * 
+	 * @return Snapshot holding the entries and terms added so far
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(this);
+	}
+
+	/**
+	 * Gets the number of entries (terms and deletes) in the index
+	 * 
+	 * @return Number of entries
+	 */
+	public int size() {
+		return this.entries;
+	}
+
+	/**
+	 * Gets the number of terms in the index
+	 * 
+	 * @return Number of terms
+	 */
+	public int getTermCount() {
+		return this.termCount;
+	}
+
+	/**
+	 * Finds the entry of a key, adding a new empty entry if the key is not in
+	 * the index yet
+	 * 
+	 * @param key
+	 *            Term or delete to insert
+	 * @return Entry number of the key
+	 */
+	public int insert(String key) {
+		int length = key.length();
+		this.ensureKeyPoolCapacity(this.keyPoolSize + length);
+		key.getChars(0, length, this.keyPool, this.keyPoolSize);
+		return this.insert(this.keyPool, this.keyPoolSize, length,
+				key.hashCode());
+	}
+
+	/**
+	 * Finds the entry of a key given as a range of characters, adding a new
+	 * empty entry if the key is not in the index yet
+	 * 
+	 * @param key
+	 *            Characters holding the key
+	 * @param offset
+	 *            Start of the key in the characters
+	 * @param length
+	 *            Length of the key
+	 * @param hash
+	 *            Hash of the key, as String.hashCode() would compute it
+	 * @return Entry number of the key
+	 */
+	public int insert(char[] key, int offset, int length, int hash) {
+		int mask = this.table.length - 1;
+		int slot = DeleteIndex.mix(hash) & mask;
+		int entry;
+		while ((entry = this.table[slot]) != 0) {
+			entry--;
+			if (this.hashes[entry] == hash
+					&& DeltaIndex.keyEquals(this.keyPool,
+							this.keyOffsets[entry], this.keyLengths[entry],
+							key, offset, length)) {
+				return entry;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		// Key was not found, so append a new entry and claim the free slot;
+		// the key may already be at the end of the pool
+		if (key != this.keyPool || offset != this.keyPoolSize) {
+			this.ensureKeyPoolCapacity(this.keyPoolSize + length);
+			System.arraycopy(key, offset, this.keyPool, this.keyPoolSize,
+					length);
+		}
+		entry = this.entries;
+		this.ensureEntryCapacity(entry + 1);
+		this.hashes[entry] = hash;
+		this.keyOffsets[entry] = this.keyPoolSize;
+		this.keyLengths[entry] = length;
+		this.termIds[entry] = -1;
+		this.keyPoolSize += length;
+		this.entries++;
+		this.table[slot] = entry + 1;
+
+		// Keep the table at most three quarters full; the full table is left
+		// to the snapshots that still read it
+		if (this.entries * 4 > this.table.length * 3) {
+			this.rehash(this.table.length * 2);
+		}
+		return entry;
+	}
+
+	/**
+	 * Marks an entry as a dictionary term and assigns it a new term id
+	 * 
+	 * @param entry
+	 *            Entry number of the term's own key
+	 * @param term
+	 *            Term stored under the entry
+	 * @param count
+	 *            Count of the term
+	 * @return Id of the new term
+	 */
+	public int addTerm(int entry, String term, int count) {
+		int termId = this.termCount;
+		if (termId == this.terms.length) {
+			this.terms = Arrays.copyOf(this.terms, termId * 2);
+			this.counts = Arrays.copyOf(this.counts, termId * 2);
+		}
+		this.terms[termId] = term;
+		this.counts[termId] = count;
+		this.termCount++;
+		this.termIds[entry] = termId;
+		if (term.length() > this.maxLength) {
+			this.maxLength = term.length();
+		}
+		return termId;
+	}
+
+	/**
+	 * Appends a suggestion to an entry. Suggestions are the terms added since
+	 * the last snapshot, so a snapshot stops at the first one it doesn't hold.
+	 * 
+	 * @param entry
+	 *            Entry number
+	 * @param termId
+	 *            Term id of the suggestion
+	 */
+	public void addSuggestion(int entry, int termId) {
+		if (this.lists[entry] == 0) {
+			int block = this.allocate(DeltaIndex.FIRST_BLOCK);
+			this.listPool[block + 2] = termId + 1;
+			this.lists[entry] = block + 1;
+			this.tails[entry] = block;
+			this.tailSizes[entry] = 1;
+			return;
+		}
+		int tail = this.tails[entry];
+		int size = this.tailSizes[entry];
+		if (size < this.listPool[tail + 1]) {
+			this.listPool[tail + 2 + size] = termId + 1;
+			this.tailSizes[entry] = size + 1;
+			return;
+		}
+
+		// The last block is full, so a block twice its size is linked after it
+		int block = this.allocate(size * 2);
+		this.listPool[block + 2] = termId + 1;
+		this.listPool[tail] = block + 1;
+		this.tails[entry] = block;
+		this.tailSizes[entry] = 1;
+		return;
+	}
+
+	/**
+	 * Adds a block of free suggestion slots to the end of the pool
+	 */
+	private int allocate(int slots) {
+		int block = this.listPoolSize;
+		if (block + 2 + slots > this.listPool.length) {
+			this.listPool = Arrays.copyOf(this.listPool,
+					Math.max(block + 2 + slots, this.listPool.length * 2));
+		}
+		this.listPool[block + 1] = slots;
+		this.listPoolSize += 2 + slots;
+		return block;
+	}
+
+	/**
+	 * Rebuilds the open addressing table in a new array with a new capacity
+	 */
+	private void rehash(int capacity) {
+		int[] newTable = new int[capacity];
+		int mask = capacity - 1;
+		for (int entry = 0; entry < this.entries; entry++) {
+			int slot = DeleteIndex.mix(this.hashes[entry]) & mask;
+			while (newTable[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			newTable[slot] = entry + 1;
+		}
+		this.table = newTable;
+		return;
+	}
+
+	private void ensureEntryCapacity(int capacity) {
+		if (capacity > this.hashes.length) {
+			int newCapacity = this.hashes.length * 2;
+			this.hashes = Arrays.copyOf(this.hashes, newCapacity);
+			this.keyOffsets = Arrays.copyOf(this.keyOffsets, newCapacity);
+			this.keyLengths = Arrays.copyOf(this.keyLengths, newCapacity);
+			this.termIds = Arrays.copyOf(this.termIds, newCapacity);
+			this.lists = Arrays.copyOf(this.lists, newCapacity);
+			this.tails = Arrays.copyOf(this.tails, newCapacity);
+			this.tailSizes = Arrays.copyOf(this.tailSizes, newCapacity);
+		}
+		return;
+	}
+
+	private void ensureKeyPoolCapacity(int capacity) {
+		if (capacity > this.keyPool.length) {
+			this.keyPool = Arrays.copyOf(this.keyPool,
+					Math.max(capacity, this.keyPool.length * 2));
+		}
+		return;
+	}
+
+	/**
+	 * Compares the characters of a key in a pool to a range of characters
+	 */
+	private static boolean keyEquals(char[] pool, int keyOffset,
+			int keyLength, char[] key, int offset, int length) {
+		if (keyLength != length) {
+			return false;
+		}
+		for (int x = 0; x < length; x++) {
+			if (pool[keyOffset + x] != key[offset + x]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Read only view of the index as it was when the snapshot was taken,
+	 * which can be shared with other threads without locking
+	 */
+	public static final class Snapshot implements IndexView {
+
+		private final DeltaIndex source;
+		private final int[] table;
+		private final int entries;
+		private final int[] hashes;
+		private final int[] keyOffsets;
+		private final int[] keyLengths;
+		private final int[] termIds;
+		private final int[] lists;
+		private final char[] keyPool;
+		private final int[] listPool;
+		private final int listPoolSize;
+		private final String[] terms;
+		private final int[] counts;
+		private final int termCount;
+		private final int maxLength;
+
+		private Snapshot(DeltaIndex source) {
+			this.source = source;
+			this.table = source.table;
+			this.entries = source.entries;
+			this.hashes = source.hashes;
+			this.keyOffsets = source.keyOffsets;
+			this.keyLengths = source.keyLengths;
+			this.termIds = source.termIds;
+			this.lists = source.lists;
+			this.keyPool = source.keyPool;
+			this.listPool = source.listPool;
+			this.listPoolSize = source.listPoolSize;
+			this.terms = source.terms;
+			this.counts = source.counts;
+			this.termCount = source.termCount;
+			this.maxLength = source.maxLength;
+		}
+
+		/**
+		 * Gets the index the snapshot was taken of
+		 * 
+		 * @return Index that later terms are added to
+		 */
+		public DeltaIndex getSource() {
+			return this.source;
+		}
+
+		@Override
+		public int find(String key) {
+			int hash = key.hashCode();
+			int mask = this.table.length - 1;
+			int slot = DeleteIndex.mix(hash) & mask;
+			int entry;
+			while ((entry = this.table[slot]) != 0) {
+				entry--;
+				if (entry < this.entries && this.hashes[entry] == hash
+						&& this.keyEquals(entry, key)) {
+					return entry;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return -1;
+		}
+
+		@Override
+		public int find(char[] key, int offset, int length, int hash) {
+			int mask = this.table.length - 1;
+			int slot = DeleteIndex.mix(hash) & mask;
+			int entry;
+			while ((entry = this.table[slot]) != 0) {
+				entry--;
+				if (entry < this.entries
+						&& this.hashes[entry] == hash
+						&& DeltaIndex.keyEquals(this.keyPool,
+								this.keyOffsets[entry],
+								this.keyLengths[entry], key, offset, length)) {
+					return entry;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return -1;
+		}
+
+		/**
+		 * Finds the key of one of this index's entries in another index
+		 * 
+		 * @param target
+		 *            Index to find the key in
+		 * @param entry
+		 *            Entry number of the key in this index
+		 * @return Entry number of the key in the target index, or -1 if the
+		 *         key is not in it
+		 */
+		public int findIn(IndexView target, int entry) {
+			return target.find(this.keyPool, this.keyOffsets[entry],
+					this.keyLengths[entry], this.hashes[entry]);
+		}
+
+		@Override
+		public int getHash(int entry) {
+			return this.hashes[entry];
+		}
+
+		@Override
+		public int getKeyLength(int entry) {
+			return this.keyLengths[entry];
+		}
+
+		@Override
+		public void getKey(int entry, char[] chars) {
+			System.arraycopy(this.keyPool, this.keyOffsets[entry], chars, 0,
+					this.keyLengths[entry]);
+			return;
+		}
+
+		@Override
+		public int getTermId(int entry) {
+			// A delete may have become a term after the snapshot was taken
+			int termId = this.termIds[entry];
+			return (termId < this.termCount) ? termId : -1;
+		}
+
+		@Override
+		public String getTerm(int termId) {
+			return this.terms[termId];
+		}
+
+		/**
+		 * Gets the count a term was added with
+		 * 
+		 * @param termId
+		 *            Id of the term
+		 * @return Count of the term when it was added
+		 */
+		@Override
+		public int getCount(int termId) {
+			return this.counts[termId];
+		}
+
+		@Override
+		public int getSuggestionCount(int entry) {
+			int count = 0;
+			for (int block = this.first(entry); block >= 0; block = this
+					.next(block)) {
+				int slots = this.listPool[block + 1];
+				for (int x = 0; x < slots; x++) {
+					if (!this.isSuggestion(block + 2 + x)) {
+						return count;
+					}
+					count++;
+				}
+			}
+			return count;
+		}
+
+		@Override
+		public int getSuggestion(int entry, int index) {
+			int block = this.first(entry);
+			while (index >= this.listPool[block + 1]) {
+				index -= this.listPool[block + 1];
+				block = this.next(block);
+			}
+			return this.listPool[block + 2 + index] - 1;
+		}
+
+		@Override
+		public int size() {
+			return this.entries;
+		}
+
+		@Override
+		public int getTermCount() {
+			return this.termCount;
+		}
+
+		@Override
+		public int getMaxLength() {
+			return this.maxLength;
+		}
+
+		/**
+		 * Gets the first block of an entry's suggestions, or -1 if there is
+		 * none in the snapshot
+		 */
+		private int first(int entry) {
+			return this.block(this.lists[entry]);
+		}
+
+		/**
+		 * Gets the block linked after a block, or -1 if there is none in the
+		 * snapshot
+		 */
+		private int next(int block) {
+			return this.block(this.listPool[block]);
+		}
+
+		private int block(int link) {
+			return (link == 0 || link - 1 >= this.listPoolSize) ? -1
+					: link - 1;
+		}
+
+		/**
+		 * Checks if a suggestion slot holds one of the snapshot's terms
+		 */
+		private boolean isSuggestion(int slot) {
+			int termId = this.listPool[slot] - 1;
+			return termId >= 0 && termId < this.termCount;
+		}
+
+		private boolean keyEquals(int entry, String key) {
+			int length = this.keyLengths[entry];
+			if (length != key.length()) {
+				return false;
+			}
+			int offset = this.keyOffsets[entry];
+			for (int x = 0; x < length; x++) {
+				if (this.keyPool[offset + x] != key.charAt(x)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
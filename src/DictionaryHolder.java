@@ -0,0 +1,265 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Holds the current generation of a dictionary and swaps in rebuilt ones.
+ * Readers take the current generation without locking and keep using it for
+ * as long as they hold it, so corrections already running finish on the
+ * generation they started on. A generation that is swapped out is released
+ * once nothing holds it anymore.
+ */
+public class DictionaryHolder {
+
+	private final int maxDistance;
+	private final int prefixLength;
+	private final int cacheCapacity;
+
+	private volatile SymSpellMetrics metrics = null;
+	private volatile CorrectionJournal journal = null;
+	private boolean tokenize = false;
+	private boolean segment = false;
+	private LookupBudget budget = null;
+	private boolean offHeap = false;
+	private volatile Generation current;
+	// Number of the last generation made, only changed while swapping one in
+	private long generations = 0;
+	// Held for the whole of a reload, so reloads run one at a time without
+	// holding the lock settings are changed under
+	private final Object reloading = new Object();
+
+	/**
+	 * Constructor with the options every generation is built with, starting
+	 * with an empty generation 0
+	 * 
+	 * @param maxDistance
+	 *            Largest edit distance looked up
+	 * @param prefixLength
+	 *            Prefix length of the deletes, or 0 to use whole terms
+	 * @param cacheCapacity
+	 *            Lookup results cached by each generation, or 0 for no cache
+	 */
+	DictionaryHolder(int maxDistance, int prefixLength, int cacheCapacity) {
+		this.maxDistance = maxDistance;
+		this.prefixLength = prefixLength;
+		this.cacheCapacity = cacheCapacity;
+		this.current = new Generation(0, new SymSpell(maxDistance,
+				prefixLength));
+	}
+
+	/**
+	 * Gets the current generation, which stays usable after it is swapped out
+	 * 
+	 * @return Current generation
+	 */
+	public Generation current() {
+		return this.current;
+	}
+
+	/**
+	 * Sets the metrics the current and all later generations record in
+	 * 
+	 * @param metrics
+	 *            Metrics to record in, or null to record nothing
+	 */
+	public synchronized void setMetrics(SymSpellMetrics metrics) {
+		this.metrics = metrics;
+		this.current.getSymSpell().SetMetrics(metrics);
+		return;
+	}
+
+	/**
+	 * Sets the journal the current and all later generations record their
+	 * corrections in
+	 * 
+	 * @param journal
+	 *            Journal to record in, or null to record nothing
+	 */
+	public synchronized void setJournal(CorrectionJournal journal) {
+		this.journal = journal;
+		this.current.getSymSpell().SetJournal(journal);
+		return;
+	}
+
+	/**
+	 * Sets whether the current and all later generations correct names one
+	 * word at a time
+	 * 
+	 * @param tokenize
+	 *            True to correct each word of a name on its own
+	 * @param segment
+	 *            True to also split words that were run together
+	 */
+	public synchronized void setTokenize(boolean tokenize, boolean segment) {
+		this.tokenize = tokenize;
+		this.segment = segment;
+		this.current.getSymSpell().SetTokenize(tokenize, segment);
+		return;
+	}
+
+	/**
+	 * Sets the limits on the lookups of the current and all later generations
+	 * 
+	 * @param budget
+	 *            Limits on each lookup, or null to let lookups run until they
+	 *            are complete
+	 */
+	public synchronized void setBudget(LookupBudget budget) {
+		this.budget = budget;
+		this.current.getSymSpell().SetBudget(budget);
+		return;
+	}
+
+	/**
+	 * Sets whether the generations built from now on keep their index outside
+	 * the heap
+	 * 
+	 * @param offHeap
+	 *            True to keep indexes in mapped files outside the heap
+	 */
+	public synchronized void setOffHeap(boolean offHeap) {
+		this.offHeap = offHeap;
+		return;
+	}
+
+	/**
+	 * Corrects an input with the current generation
+	 * 
+	 * @param input
+	 *            Input to correct
+	 * @return Correction, with the number of the generation that made it
+	 */
+	public Correction correct(String input) {
+		return this.current.correct(input);
+	}
+
+	/**
+	 * Builds a new generation from a corpus and swaps it in once it is
+	 * complete. Corrections keep using the current generation meanwhile, and
+	 * keep using it if the corpus can't be loaded. Reloads run one at a time,
+	 * and settings can be changed while one builds.
+	 * 
+	 * @param corpus
+	 *            File of the dictionary terms
+	 * @return Number of the new generation, or -1 if the corpus could not be
+	 *         loaded and the current generation was kept
+	 */
+	public long reload(String corpus) {
+		synchronized (this.reloading) {
+			SymSpell sc = new SymSpell(this.maxDistance, this.prefixLength);
+			if (this.cacheCapacity > 0) {
+				sc.SetCache(new CorrectionCache(this.cacheCapacity));
+			}
+			synchronized (this) {
+				this.configure(sc);
+			}
+			// Reuse the index saved next to the corpus unless the corpus
+			// changed
+			if (!sc.LoadDictionary(corpus, corpus + ".idx")) {
+				return -1;
+			}
+			synchronized (this) {
+				// Settings may have changed while the generation was built
+				this.configure(sc);
+				this.current = new Generation(++this.generations, sc);
+				return this.generations;
+			}
+		}
+	}
+
+	/**
+	 * Applies the settings of every generation to a new one
+	 */
+	private void configure(SymSpell sc) {
+		sc.SetMetrics(this.metrics);
+		sc.SetJournal(this.journal);
+		sc.SetTokenize(this.tokenize, this.segment);
+		sc.SetBudget(this.budget);
+		sc.SetOffHeap(this.offHeap);
+		return;
+	}
+
+	/**
+	 * Builds a new generation from a corpus on an executor and swaps it in
+	 * once it is complete
+	 * 
+	 * @param corpus
+	 *            File of the dictionary terms
+	 * @param executor
+	 *            Executor to build the generation on
+	 * @return Number of the new generation once it is swapped in, or -1 if
+	 *         the corpus could not be loaded
+	 */
+	public Future<Long> reload(final String corpus, ExecutorService executor) {
+		return executor.submit(new Callable<Long>() {
+			@Override
+			public Long call() {
+				return DictionaryHolder.this.reload(corpus);
+			}
+		});
+	}
+
+	/**
+	 * A dictionary that never changes once it is swapped in, with the number
+	 * it was swapped in as
+	 */
+	public static final class Generation {
+
+		private final long number;
+		private final SymSpell sc;
+
+		private Generation(long number, SymSpell sc) {
+			this.number = number;
+			this.sc = sc;
+		}
+
+		/**
+		 * Gets the number of the generation, which grows with every reload
+		 * 
+		 * @return Generation number, 0 for the empty first generation
+		 */
+		public long getNumber() {
+			return this.number;
+		}
+
+		/**
+		 * Gets the spelling corrector of the generation
+		 * 
+		 * @return Spelling corrector with the generation's dictionary
+		 */
+		public SymSpell getSymSpell() {
+			return this.sc;
+		}
+
+		/**
+		 * Corrects an input with this generation
+		 * 
+		 * @param input
+		 *            Input to correct
+		 * @return Correction, with this generation's number
+		 */
+		public Correction correct(String input) {
+			return new Correction(input, this.sc.Correct(input), this.number);
+		}
+	}
+}
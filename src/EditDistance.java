@@ -0,0 +1,360 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+import java.util.Arrays;
+
+/**
+ * Bounded Damerau-Levenshtein distance. Gives the same result as
+ * SymSpell.DamerauLevenshteinDistance whenever that result is within the
+ * bound, but only evaluates the diagonal band the bound allows, keeps only
+ * the rows a transposition can reach back to, stops as soon as the bound is
+ * exceeded and reuses per-thread buffers instead of allocating on every
+ * call. Strings that fit in a machine word are first checked with a
+ * bit-parallel algorithm.
+ */
+public class EditDistance {
+
+	/**
+	 * Buffers reused by every call on the same thread
+	 */
+	private static class Scratch {
+		// Rows of the band, flattened row by row and reused in turn
+		private int[] rows = new int[256];
+		// Last row each character was seen in
+		private final CharMap lastRow = new CharMap();
+		// Positions of each character in the bit-parallel pattern
+		private final CharMap peq = new CharMap();
+	}
+
+	/**
+	 * Map of characters to values that are 0 until set. Latin-1 characters
+	 * are looked up directly and the others by open addressing, so the map
+	 * grows with the characters used rather than the whole character set.
+	 */
+	private static class CharMap {
+		private final long[] latin = new long[256];
+		// Other characters, where 0 marks a free slot as no such character is
+		// below 256
+		private char[] keys = new char[16];
+		private long[] values = new long[16];
+		private int size = 0;
+
+		private long get(char c) {
+			if (c < 256) {
+				return this.latin[c];
+			}
+			int mask = this.keys.length - 1;
+			for (int slot = CharMap.slot(c, mask); this.keys[slot] != 0; slot = (slot + 1)
+					& mask) {
+				if (this.keys[slot] == c) {
+					return this.values[slot];
+				}
+			}
+			return 0;
+		}
+
+		private void put(char c, long value) {
+			if (c < 256) {
+				this.latin[c] = value;
+				return;
+			}
+			int mask = this.keys.length - 1;
+			int slot = CharMap.slot(c, mask);
+			while (this.keys[slot] != 0 && this.keys[slot] != c) {
+				slot = (slot + 1) & mask;
+			}
+			if (this.keys[slot] == 0) {
+				this.keys[slot] = c;
+				this.size++;
+			}
+			this.values[slot] = value;
+
+			// Keep the table at most half full
+			if (this.size * 2 > this.keys.length) {
+				char[] keys = this.keys;
+				long[] values = this.values;
+				this.keys = new char[keys.length * 2];
+				this.values = new long[keys.length * 2];
+				this.size = 0;
+				for (int x = 0; x < keys.length; x++) {
+					if (keys[x] != 0) {
+						this.put(keys[x], values[x]);
+					}
+				}
+			}
+			return;
+		}
+
+		/**
+		 * Sets the values of the characters of a range back to 0
+		 */
+		private void clear(String s, int start, int end) {
+			for (int x = start; x < end; x++) {
+				char c = s.charAt(x);
+				if (c < 256) {
+					this.latin[c] = 0;
+				}
+			}
+			if (this.size > 0) {
+				Arrays.fill(this.keys, (char) 0);
+				this.size = 0;
+			}
+			return;
+		}
+
+		private static int slot(char c, int mask) {
+			return (c * 0x9E3779B9 >>> 16) & mask;
+		}
+	}
+
+	private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch();
+		}
+	};
+
+	/**
+	 * Computes the Damerau-Levenshtein distance between two Strings
+	 * 
+	 * @param a
+	 *            First String
+	 * @param b
+	 *            Second String
+	 * @param max
+	 *            Largest distance the caller is interested in
+	 * @return The distance, or max + 1 if the distance is greater than max
+	 */
+	public static int damerauLevenshtein(String a, String b, int max) {
+		return EditDistance.damerauLevenshtein(a, 0, a.length(), b, 0,
+				b.length(), max);
+	}
+
+	/**
+	 * Computes the Damerau-Levenshtein distance between two ranges of Strings
+	 * 
+	 * @param a
+	 *            First String
+	 * @param aStart
+	 *            Start of the range of the first String
+	 * @param aEnd
+	 *            End (exclusive) of the range of the first String
+	 * @param b
+	 *            Second String
+	 * @param bStart
+	 *            Start of the range of the second String
+	 * @param bEnd
+	 *            End (exclusive) of the range of the second String
+	 * @param max
+	 *            Largest distance the caller is interested in
+	 * @return The distance, or max + 1 if the distance is greater than max
+	 * @throws IllegalArgumentException
+	 *             If the band of the bound doesn't fit in an array, which
+	 *             takes both Strings and the bound to be tens of thousands
+	 *             long
+	 */
+	public static int damerauLevenshtein(String a, int aStart, int aEnd,
+			String b, int bStart, int bEnd, int max) {
+		final int n = aEnd - aStart;
+		final int m = bEnd - bStart;
+		// The distance is never more than the longer range, so a larger
+		// bound only widens the band
+		max = Math.min(max, Math.max(n, m));
+		final int inf = max + 1;
+
+		// Distance is at least the difference in length
+		if (Math.abs(n - m) > max) {
+			return inf;
+		}
+		if (n == 0 || m == 0) {
+			return Math.max(n, m);
+		}
+
+		Scratch scratch = SCRATCH.get();
+
+		// The optimal string alignment distance is never below the
+		// Damerau-Levenshtein distance and equals it up to 2; above that each
+		// transposition with edits in between saves at most one edit per two
+		if (Math.min(n, m) <= Long.SIZE) {
+			int osa = (n <= m) ? EditDistance.optimalStringAlignment(scratch,
+					a, aStart, aEnd, b, bStart, bEnd)
+					: EditDistance.optimalStringAlignment(scratch, b, bStart,
+							bEnd, a, aStart, aEnd);
+			if (osa <= 2) {
+				return Math.min(osa, inf);
+			}
+			if ((2 * osa + 2) / 3 > max) {
+				return inf;
+			}
+		}
+
+		// Row r of the matrix holds the distances between the first r - 1
+		// characters of a and the first c - 1 characters of b at column
+		// c - r + max + 1, which keeps the band and its two neighbours in
+		// 2 * max + 3 cells. A transposition never reaches back more than
+		// max rows, so the rows are reused in turn.
+		final int width = 2 * max + 3;
+		final int rowCount = Math.min(max, n) + 3;
+		if ((long) width * rowCount > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("Bound " + max
+					+ " is too large for Strings this long");
+		}
+		if (scratch.rows.length < width * rowCount) {
+			scratch.rows = new int[Math.max(width * rowCount,
+					(int) Math.min(Integer.MAX_VALUE - 8,
+							2L * scratch.rows.length))];
+		}
+		final int[] H = scratch.rows;
+		final CharMap DA = scratch.lastRow;
+
+		// Distances from the empty prefix of a
+		for (int j = 0; j <= max + 1; j++) {
+			H[width + j + max + 1] = Math.min(j, inf);
+		}
+
+		for (int i = 1; i <= n; i++) {
+			final char ai = a.charAt(aStart + i - 1);
+			// Start of rows i + 1 and i, less the column of the diagonal
+			final int row = ((i + 1) % rowCount) * width - i + max;
+			final int above = (i % rowCount) * width - i + max + 1;
+			final int first = Math.max(1, i - max);
+			final int last = Math.min(m, i + max);
+
+			// Cells just outside the band are read as neighbours, so they
+			// have to hold the distance from the empty prefix of b or
+			// something over the bound
+			H[row + first] = (first > 1) ? inf : Math.min(i, inf);
+			if (last == i + max) {
+				H[above + last + 1] = inf;
+			}
+
+			int DB = 0;
+			int rowMin = inf;
+			for (int j = first; j <= last; j++) {
+				final char bj = b.charAt(bStart + j - 1);
+				final int i1 = (int) DA.get(bj);
+				final int j1 = DB;
+				int d = 1;
+				if (ai == bj) {
+					d = 0;
+					DB = j;
+				}
+				int value = Math.min(H[above + j] + d,
+						Math.min(H[row + j] + 1, H[above + j + 1] + 1));
+				// Transpositions only count if they can stay within the
+				// bound, which also keeps reads inside the computed band
+				if (i1 > 0 && j1 > 0) {
+					int cost = (i - i1 - 1) + 1 + (j - j1 - 1);
+					if (cost < value && Math.abs(i1 - j1) <= max) {
+						value = Math.min(value, H[(i1 % rowCount) * width
+								+ j1 - i1 + max + 1]
+								+ cost);
+					}
+				}
+				if (value > inf) {
+					value = inf;
+				}
+				H[row + j + 1] = value;
+				if (value < rowMin) {
+					rowMin = value;
+				}
+			}
+
+			// Rows never get cheaper than the row before them
+			if (rowMin > max) {
+				DA.clear(a, aStart, aEnd);
+				return inf;
+			}
+			DA.put(ai, i);
+		}
+		DA.clear(a, aStart, aEnd);
+		return H[((n + 1) % rowCount) * width + m - n + max + 1];
+	}
+
+	/**
+	 * Computes the optimal string alignment distance (Levenshtein plus
+	 * transpositions of adjacent characters that are not edited again) with
+	 * Hyyro's extension of Myers' bit-vector algorithm
+	 * 
+	 * @param a
+	 *            First String
+	 * @param aStart
+	 *            Start of the range of the first String
+	 * @param aEnd
+	 *            End (exclusive) of the range of the first String, at most 64
+	 *            characters after the start
+	 * @param b
+	 *            Second String
+	 * @param bStart
+	 *            Start of the range of the second String
+	 * @param bEnd
+	 *            End (exclusive) of the range of the second String
+	 * @return The optimal string alignment distance
+	 */
+	public static int optimalStringAlignment(String a, int aStart, int aEnd,
+			String b, int bStart, int bEnd) {
+		if (aEnd - aStart > Long.SIZE) {
+			throw new IllegalArgumentException("First range is longer than "
+					+ Long.SIZE + " characters");
+		}
+		return EditDistance.optimalStringAlignment(SCRATCH.get(), a, aStart,
+				aEnd, b, bStart, bEnd);
+	}
+
+	private static int optimalStringAlignment(Scratch scratch, String a,
+			int aStart, int aEnd, String b, int bStart, int bEnd) {
+		final int m = aEnd - aStart;
+		if (m == 0) {
+			return bEnd - bStart;
+		}
+		final CharMap peq = scratch.peq;
+		for (int i = 0; i < m; i++) {
+			char c = a.charAt(aStart + i);
+			peq.put(c, peq.get(c) | (1L << i));
+		}
+
+		// Vertical deltas of the current column, one bit per row of a
+		long vp = -1L;
+		long vn = 0;
+		long d0 = 0;
+		long eqPrevious = 0;
+		final long last = 1L << (m - 1);
+		int score = m;
+		for (int j = bStart; j < bEnd; j++) {
+			final long eq = peq.get(b.charAt(j));
+			final long transposition = (((~d0) & eq) << 1) & eqPrevious;
+			d0 = ((((eq & vp) + vp) ^ vp) | eq | vn) | transposition;
+			long hp = vn | ~(d0 | vp);
+			long hn = vp & d0;
+			if ((hp & last) != 0) {
+				score++;
+			} else if ((hn & last) != 0) {
+				score--;
+			}
+			hp = (hp << 1) | 1;
+			hn = hn << 1;
+			vp = hn | ~(d0 | hp);
+			vn = hp & d0;
+			eqPrevious = eq;
+		}
+
+		peq.clear(a, aStart, aEnd);
+		return score;
+	}
+}
@@ -0,0 +1,232 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+import java.util.Random;
+
+/**
+ * Differential check of EditDistance against
+ * SymSpell.DamerauLevenshteinDistance on random pairs of strings generated
+ * from a seed. Pairs are drawn from small alphabets so transpositions and
+ * repeated characters are common, and their lengths cross the 64 characters
+ * the bit-parallel distance works on. Besides the bounded distances, the
+ * bounds the bit-parallel prefilter relies on are checked: the optimal
+ * string alignment distance is never below the Damerau-Levenshtein distance,
+ * equals it up to 2, and is at most one and a half times it.
+ * 
+ * Usage: java EditDistanceCheck [--seed n] [--pairs n]
+ * 
+ * Exits with status 1 if any check fails.
+ */
+public class EditDistanceCheck {
+
+	private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz";
+	// Strings are up to this long, past the 64 characters of a machine word
+	private static final int MAX_LENGTH = 80;
+	// Bounds the bounded distances are checked with
+	private static final int MAX_BOUND = 6;
+	// Mismatches printed before the rest are only counted
+	private static final int MAX_REPORTED = 20;
+
+	private long seed = 1;
+	private int pairs = 100000;
+	private long checks = 0;
+	private long mismatches = 0;
+
+	/**
+	 * Runs the check and exits with status 1 if it failed
+	 * 
+	 * @param args
+	 *            Options of the run
+	 */
+	public static void main(String[] args) {
+		EditDistanceCheck check = new EditDistanceCheck();
+		for (int x = 0; x < args.length; x += 2) {
+			String value = (x + 1 < args.length) ? args[x + 1] : "";
+			if (args[x].equals("--seed")) {
+				check.seed = Long.parseLong(value);
+			} else if (args[x].equals("--pairs")) {
+				check.pairs = Integer.parseInt(value);
+			} else {
+				throw new IllegalArgumentException("Unknown option " + args[x]);
+			}
+		}
+		check.run();
+		System.out.println(check.checks + " checks, " + check.mismatches
+				+ " mismatches, seed " + check.seed);
+		if (check.mismatches > 0) {
+			System.exit(1);
+		}
+		return;
+	}
+
+	private void run() {
+		Random random = new Random(this.seed);
+		for (int x = 0; x < this.pairs; x++) {
+			// Few distinct characters make transpositions and repeats likely
+			int letters = 1 + random.nextInt(
+					(random.nextInt(4) == 0) ? EditDistanceCheck.ALPHABET
+							.length() : 4);
+			String a = EditDistanceCheck.randomString(random, letters,
+					random.nextInt(EditDistanceCheck.MAX_LENGTH + 1));
+			// Most pairs are near each other, as lookups compare them
+			String b = (random.nextInt(4) == 0) ? EditDistanceCheck
+					.randomString(random, letters,
+							random.nextInt(EditDistanceCheck.MAX_LENGTH + 1))
+					: EditDistanceCheck.edit(a, random.nextInt(8), letters,
+							random);
+			this.checkPair(a, b, random);
+		}
+		return;
+	}
+
+	private void checkPair(String a, String b, Random random) {
+		int expected = SymSpell.DamerauLevenshteinDistance(a, b);
+		for (int max = 0; max <= EditDistanceCheck.MAX_BOUND; max++) {
+			this.expect(Math.min(expected, max + 1),
+					EditDistance.damerauLevenshtein(a, b, max),
+					"damerauLevenshtein", a, b, max);
+		}
+		this.expect(expected, EditDistance.damerauLevenshtein(a, b,
+				a.length() + b.length()), "damerauLevenshtein", a, b,
+				a.length() + b.length());
+
+		// Ranges of longer strings, as lookups compare after cutting off a
+		// common prefix and suffix
+		int aStart = (a.length() == 0) ? 0 : random.nextInt(a.length() + 1);
+		int aEnd = aStart + random.nextInt(a.length() - aStart + 1);
+		int bStart = (b.length() == 0) ? 0 : random.nextInt(b.length() + 1);
+		int bEnd = bStart + random.nextInt(b.length() - bStart + 1);
+		String aRange = a.substring(aStart, aEnd);
+		String bRange = b.substring(bStart, bEnd);
+		int rangeExpected = SymSpell.DamerauLevenshteinDistance(aRange, bRange);
+		int max = random.nextInt(EditDistanceCheck.MAX_BOUND + 1);
+		this.expect(Math.min(rangeExpected, max + 1), EditDistance
+				.damerauLevenshtein(a, aStart, aEnd, b, bStart, bEnd, max),
+				"damerauLevenshtein range", aRange, bRange, max);
+
+		if (a.length() <= Long.SIZE) {
+			int osa = EditDistance.optimalStringAlignment(a, 0, a.length(), b,
+					0, b.length());
+			this.expect(EditDistanceCheck.optimalStringAlignment(a, b), osa,
+					"optimalStringAlignment", a, b, -1);
+			// The prefilter may only reject pairs that are further than it
+			// says
+			this.checks++;
+			if ((osa < expected) || ((osa <= 2) && (osa != expected))
+					|| ((2 * osa + 2) / 3 > expected)) {
+				this.report("prefilter bounds, osa " + osa + ", expected "
+						+ expected, a, b, -1);
+			}
+		}
+		return;
+	}
+
+	private void expect(int expected, int actual, String name, String a,
+			String b, int max) {
+		this.checks++;
+		if (expected != actual) {
+			this.report(name + " " + actual + ", expected " + expected, a, b,
+					max);
+		}
+		return;
+	}
+
+	private void report(String message, String a, String b, int max) {
+		if (this.mismatches++ < EditDistanceCheck.MAX_REPORTED) {
+			System.out.println("Mismatch: " + message + " for \"" + a
+					+ "\" and \"" + b + "\""
+					+ ((max >= 0) ? ", max " + max : ""));
+		}
+		return;
+	}
+
+	/**
+	 * Computes the optimal string alignment distance with the full matrix,
+	 * as the reference for the bit-parallel one
+	 */
+	private static int optimalStringAlignment(String a, String b) {
+		int[][] d = new int[a.length() + 1][b.length() + 1];
+		for (int i = 0; i <= a.length(); i++) {
+			d[i][0] = i;
+		}
+		for (int j = 0; j <= b.length(); j++) {
+			d[0][j] = j;
+		}
+		for (int i = 1; i <= a.length(); i++) {
+			for (int j = 1; j <= b.length(); j++) {
+				int cost = (a.charAt(i - 1) == b.charAt(j - 1)) ? 0 : 1;
+				d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1),
+						d[i - 1][j - 1] + cost);
+				if ((i > 1) && (j > 1) && (a.charAt(i - 1) == b.charAt(j - 2))
+						&& (a.charAt(i - 2) == b.charAt(j - 1))) {
+					d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+				}
+			}
+		}
+		return d[a.length()][b.length()];
+	}
+
+	private static String randomString(Random random, int letters, int length) {
+		StringBuilder string = new StringBuilder(length);
+		for (int x = 0; x < length; x++) {
+			string.append(EditDistanceCheck.ALPHABET.charAt(random
+					.nextInt(letters)));
+		}
+		return string.toString();
+	}
+
+	/**
+	 * Makes random deletes, inserts, replaces and transposes to a string,
+	 * with letters from the same alphabet
+	 */
+	private static String edit(String word, int edits, int letters,
+			Random random) {
+		StringBuilder edited = new StringBuilder(word);
+		for (int x = 0; x < edits; x++) {
+			int at = (edited.length() == 0) ? 0 : random.nextInt(edited
+					.length());
+			char letter = EditDistanceCheck.ALPHABET.charAt(random
+					.nextInt(letters));
+			switch (random.nextInt(4)) {
+			case 0:
+				if (edited.length() > 0) {
+					edited.deleteCharAt(at);
+				}
+				break;
+			case 1:
+				edited.insert(at, letter);
+				break;
+			case 2:
+				if (edited.length() > 0) {
+					edited.setCharAt(at, letter);
+				}
+				break;
+			default:
+				if (at + 1 < edited.length()) {
+					char first = edited.charAt(at);
+					edited.setCharAt(at, edited.charAt(at + 1));
+					edited.setCharAt(at + 1, first);
+				}
+				break;
+			}
+		}
+		return edited.toString();
+	}
+}
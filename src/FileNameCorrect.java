@@ -1,95 +1,436 @@
-/*
-Copyright © 2015-2017 Leejae Karinja
-
-This file is part of Java File Correct.
-
-Java File Correct is free software: you can redistribute it and/or modify
-it under the terms of the GNU General Public License as published by
-the Free Software Foundation, either version 3 of the License, or
-(at your option) any later version.
-
-Java File Correct is distributed in the hope that it will be useful,
-but WITHOUT ANY WARRANTY; without even the implied warranty of
-MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
-GNU General Public License for more details.
-
-You should have received a copy of the GNU General Public License
-along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
-*/
-
-import java.io.PrintWriter;
-
-public class FileNameCorrect {
-
-	/**
-	 * Corrects a given folder of files with a dictionary file
-	 * 
-	 * @param folderName
-	 *            Folder to correct all file names
-	 * @param fileName
-	 *            File of the dictionary file
-	 * @param iterations
-	 *            How many iterations should words be checked for
-	 */
-	public static void correctFileNames(String folderName, String fileName,
-			int iterations) {
-		try {
-			// Create a new FileInOut object of the folder to work in
-			FileInOut folder = new FileInOut(folderName);
-			// Get a list of all of the files in the working directory
-			FileInOut[] filesInFolder = folder.listFiles();
-			// Get the file to use as the dictionary
-			// FileInOut file = new FileInOut(fileName);
-			// String dictionaryData = file.read();
-
-			// Logging file
-			PrintWriter writer = new PrintWriter("log.txt");
-			writer.write("");
-
-			// SpellingCorrector sc = new SpellingCorrector();
-			SymSpell sc = new SymSpell(iterations);
-
-			// Create new Lists of the correct names from the dictionary and the
-			// given names of the files
-			// EditList correctNames = new EditList();
-			EditList givenNames = new EditList();
-			sc.CreateDictionary(fileName);
-
-			// Set the List of the correct names to the data from the dictionary
-			// file
-			// correctNames.populate(dictionaryData, "\n");
-			// for (int x = 0; x < correctNames.size(); x++) {
-			// sc.addToDictionary(correctNames.getFromList(x));
-			// }
-
-			// Sets the file names into the List of all file names
-			for (FileInOut currentFile : filesInFolder) {
-				givenNames.addToList(currentFile.getName());
-			}
-
-			// Run the spelling correction algorithm
-			for (int x = 0; x < givenNames.size(); x++) {
-				/*
-				 * if (!dictionaryData.contains(givenNames.getFromList(x))) {
-				 * String correct = sc.correct(givenNames.getFromList(x),
-				 * iterations); if (!correct.equals(givenNames.getFromList(x)))
-				 * { writer.append("[" + System.currentTimeMillis() +
-				 * "]: Corrected \"" + givenNames.getFromList(x) + "\" to \"" +
-				 * correct + "\"\n"); System.out.println("[" +
-				 * System.currentTimeMillis() + "]: Corrected \"" +
-				 * givenNames.getFromList(x) + "\" to \"" + correct + "\""); }
-				 * else { writer.append("[" + System.currentTimeMillis() +
-				 * "]: Could not correct \"" + givenNames.getFromList(x) +
-				 * "\"\n"); System.out.println("[" + System.currentTimeMillis()
-				 * + "]: Could not correct \"" + givenNames.getFromList(x) +
-				 * "\""); } }
-				 */
-				sc.Correct(givenNames.getFromList(x));
-			}
-			writer.close();
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-		return;
-	}
-}
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+
+public class FileNameCorrect {
+
+	// Names corrected by each task, so a task is worth handing to a thread
+	private static final int NAMES_PER_TASK = 256;
+	// Corrections kept for names that repeat across the folder
+	private static final int CACHE_CAPACITY = 1 << 16;
+	// Files waiting between two stages of the rename pipeline
+	private static final int QUEUE_CAPACITY = 1 << 12;
+	// Files renamed at a time as one transaction, and the threads moving them
+	private static final int RENAME_BATCH = 1 << 10;
+	private static final int RENAME_THREADS = 4;
+	// Journal of the renames in progress, left behind if a run is interrupted,
+	// and the files and folders done by a run, so a stopped run can be
+	// resumed. Each is named for a hash of the folder it belongs to, so runs
+	// over different folders never resume or delete each other's.
+	private static final String RENAME_JOURNAL = "renames-%s.journal";
+	private static final String CHECKPOINT_FILE = "correct-%s.checkpoint";
+	// Journal of every correction, written in the background
+	private static final String JOURNAL_FILE = "corrections.log";
+	private static final int JOURNAL_CAPACITY = 1 << 16;
+	// Names are corrected one word at a time. Words run together are not
+	// split into the terms they hold, as that can split ordinary words into
+	// short names.
+	private static final boolean TOKENIZE = true;
+	private static final boolean SEGMENT = false;
+	// Limits on each lookup, so a few names with very many candidates can't
+	// hold up the others: candidates taken, time, and the largest edit
+	// distance by name length, the last one for all longer names. Only a
+	// watch limits time, as a batch run has to correct the same names the
+	// same way however busy the machine is. Indexes are built for the
+	// largest of the distances, however many iterations are asked for.
+	private static final int LOOKUP_CANDIDATES = 1 << 16;
+	private static final long LOOKUP_MILLIS = 50;
+	private static final int[] LOOKUP_DISTANCES = { 0, 0, 0, 1, 1, 1, 2, 2,
+			2, 3 };
+	// Whether dictionary indexes are kept in mapped files outside the heap
+	private static volatile boolean offHeap = false;
+
+	/**
+	 * Sets whether the dictionaries loaded from now on keep their index
+	 * outside the heap, so a large dictionary needs no large heap
+	 * 
+	 * @param offHeap
+	 *            True to keep indexes in mapped files outside the heap
+	 */
+	public static void setOffHeap(boolean offHeap) {
+		FileNameCorrect.offHeap = offHeap;
+		return;
+	}
+
+	/**
+	 * Corrects a given folder of files with a dictionary file, spreading the
+	 * corrections over one thread per processor
+	 * 
+	 * @param folderName
+	 *            Folder to correct all file names
+	 * @param fileName
+	 *            File of the dictionary file
+	 * @param iterations
+	 *            How many iterations should words be checked for
+	 */
+	public static void correctFileNames(String folderName, String fileName,
+			int iterations) {
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime
+				.getRuntime().availableProcessors());
+		try {
+			correctFileNames(folderName, fileName, iterations, executor);
+		} finally {
+			executor.shutdown();
+		}
+		return;
+	}
+
+	/**
+	 * Corrects a given folder of files with a dictionary file, running the
+	 * corrections on the given executor
+	 * 
+	 * @param folderName
+	 *            Folder to correct all file names
+	 * @param fileName
+	 *            File of the dictionary file
+	 * @param iterations
+	 *            How many iterations should words be checked for
+	 * @param executor
+	 *            Executor to run the corrections on, which is left running
+	 */
+	public static void correctFileNames(String folderName, String fileName,
+			int iterations, ExecutorService executor) {
+		// Only the files directly in the folder are corrected
+		try (FileScanner files = new FileScanner(folderName, 1)) {
+			correctFileNames(files, fileName, iterations, executor);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return;
+	}
+
+	/**
+	 * Corrects the files found by a scanner with a dictionary file, running
+	 * the corrections on the given executor. Scanning, correcting and
+	 * renaming overlap in a pipeline, so any number of files can be
+	 * corrected while the disk and the processors both stay busy.
+	 * 
+	 * @param files
+	 *            Scanner of the files to correct, which is left open
+	 * @param fileName
+	 *            File of the dictionary file
+	 * @param iterations
+	 *            How many iterations should words be checked for
+	 * @param executor
+	 *            Executor to run the corrections on, which is left running
+	 */
+	public static void correctFileNames(FileScanner files, String fileName,
+			int iterations, ExecutorService executor) {
+		Path root = files.getRoot();
+		Path checkpointFile = FileNameCorrect.stateFile(
+				FileNameCorrect.CHECKPOINT_FILE, root);
+		Path renameJournal = FileNameCorrect.renameJournal(root);
+		// The checkpoint is only resumed with the dictionary it was made with
+		long dictionary;
+		try {
+			dictionary = SymSpell.Checksum(fileName);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		// Logging file of the renames, and the journal of every correction
+		// A stopped run left its checkpoint, so the logs are appended to
+		boolean resuming = Files.exists(checkpointFile);
+		try (PrintWriter writer = new PrintWriter(new FileWriter("log.txt",
+				resuming));
+				CorrectionJournal journal = new CorrectionJournal(
+						new FileWriter(FileNameCorrect.JOURNAL_FILE, resuming),
+						FileNameCorrect.JOURNAL_CAPACITY,
+						CorrectionJournal.Overflow.BLOCK);
+				Checkpoint checkpoint = new Checkpoint(checkpointFile, root,
+						dictionary)) {
+			// The dictionary's index was saved when it was built, so a
+			// resumed run maps it instead of building it again
+			SymSpell sc = createCorrector(fileName, iterations);
+			sc.SetJournal(journal);
+			if (checkpoint.isDiscarded()) {
+				writer.append("[" + System.currentTimeMillis()
+						+ "]: Discarded the checkpoint of a run over another"
+						+ " folder or with another dictionary\n");
+			}
+			if (checkpoint.getRestoredCount() > 0) {
+				writer.append("[" + System.currentTimeMillis()
+						+ "]: Resuming with " + checkpoint.getRestoredCount()
+						+ " files and folders done\n");
+			}
+
+			// One correction worker per processor, with the renames moved on
+			// their own threads so they never wait for a worker
+			ExecutorService movers = Executors
+					.newFixedThreadPool(FileNameCorrect.RENAME_THREADS);
+			RenamePipeline pipeline = new RenamePipeline(sc, executor,
+					Runtime.getRuntime().availableProcessors(), movers,
+					FileNameCorrect.QUEUE_CAPACITY,
+					FileNameCorrect.RENAME_BATCH, renameJournal, writer);
+			pipeline.setCheckpoint(checkpoint);
+			try {
+				resumeRenames(renameJournal, movers, writer);
+				pipeline.run(files);
+				checkpoint.finish();
+			} finally {
+				movers.shutdown();
+				for (RenamePipeline.Stage stage : pipeline.getStages()) {
+					writer.append("[" + System.currentTimeMillis() + "]: "
+							+ stage + "\n");
+				}
+				writer.append("[" + System.currentTimeMillis() + "]: Skipped "
+						+ pipeline.getSkippedCount() + " files done before\n");
+			}
+
+			writer.append("[" + System.currentTimeMillis() + "]: Cache "
+					+ sc.GetCache() + "\n");
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return;
+	}
+
+	/**
+	 * Watches a folder and corrects the files created in or moved into it,
+	 * reloading the dictionary when it changes, until the thread is
+	 * interrupted
+	 * 
+	 * @param folderName
+	 *            Folder to keep the file names of correct
+	 * @param fileName
+	 *            File of the dictionary file
+	 * @param iterations
+	 *            How many iterations should words be checked for
+	 */
+	public static void watchFileNames(String folderName, String fileName,
+			int iterations) {
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime
+				.getRuntime().availableProcessors());
+		LookupBudget budget = FileNameCorrect.createBudget(true);
+		DictionaryHolder holder = new DictionaryHolder(
+				budget.getMaxDistance(iterations), 0,
+				FileNameCorrect.CACHE_CAPACITY);
+		// A long running watch can be inspected and tuned over JMX
+		SymSpellMetrics metrics = new SymSpellMetrics();
+		try {
+			metrics.register(folderName);
+		} catch (JMException e) {
+			e.printStackTrace();
+		}
+		holder.setMetrics(metrics);
+		holder.setTokenize(FileNameCorrect.TOKENIZE, FileNameCorrect.SEGMENT);
+		holder.setBudget(budget);
+		holder.setOffHeap(FileNameCorrect.offHeap);
+		holder.reload(fileName);
+		// A watch never waits on its journal, and drops the oldest
+		// corrections if it falls behind
+		try (PrintWriter writer = new PrintWriter(new FileWriter("log.txt",
+				true));
+				CorrectionJournal journal = new CorrectionJournal(
+						new FileWriter(FileNameCorrect.JOURNAL_FILE, true),
+						FileNameCorrect.JOURNAL_CAPACITY,
+						CorrectionJournal.Overflow.DROP_OLDEST);
+				FolderWatcher watcher = new FolderWatcher(holder,
+						Paths.get(fileName), Paths.get(folderName),
+						Paths.get(folderName + ".state"), executor, writer)) {
+			holder.setJournal(journal);
+			resumeRenames(FileNameCorrect.renameJournal(Paths.get(folderName)),
+					executor, writer);
+			watcher.run();
+			holder.setJournal(null);
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			executor.shutdown();
+		}
+		return;
+	}
+
+	// Creates the spelling corrector of a batch run for a dictionary, reusing
+	// the index saved next to the dictionary unless the dictionary or the
+	// iterations changed
+	static SymSpell createCorrector(String fileName, int iterations) {
+		LookupBudget budget = FileNameCorrect.createBudget(false);
+		SymSpell sc = new SymSpell(budget.getMaxDistance(iterations));
+		sc.SetCache(new CorrectionCache(FileNameCorrect.CACHE_CAPACITY));
+		sc.SetTokenize(FileNameCorrect.TOKENIZE, FileNameCorrect.SEGMENT);
+		sc.SetBudget(budget);
+		sc.SetOffHeap(FileNameCorrect.offHeap);
+		sc.LoadDictionary(fileName, fileName + ".idx");
+		return sc;
+	}
+
+	// Gets the journal the renames in a folder are written to while they are
+	// made
+	static Path renameJournal(Path root) {
+		return FileNameCorrect.stateFile(FileNameCorrect.RENAME_JOURNAL, root);
+	}
+
+	// Names a file of the state of a run over a folder after the folder
+	static Path stateFile(String format, Path root) {
+		return Paths.get(String.format(format,
+				Checkpoint.toHex(Checkpoint.hash(root.toAbsolutePath()
+						.normalize()))));
+	}
+
+	// Creates the limits each lookup of a name is made within, with a time
+	// limit only for a watch
+	static LookupBudget createBudget(boolean watching) {
+		return new LookupBudget(FileNameCorrect.LOOKUP_CANDIDATES,
+				watching ? TimeUnit.MILLISECONDS
+						.toNanos(FileNameCorrect.LOOKUP_MILLIS) : 0,
+				FileNameCorrect.LOOKUP_DISTANCES);
+	}
+
+	// Corrects a batch of names and renames every file whose name was
+	// corrected, returning the new paths of the renamed files. A renamed file
+	// may be found again by a scan that is still reading its folder, but its
+	// new name is already correct.
+	static List<Path> renameFiles(SymSpell sc, EditList givenNames,
+			List<ScanEntry> givenFiles, Path journal,
+			ExecutorService executor, PrintWriter writer) throws Exception {
+		// Run the spelling correction algorithm
+		EditList correctNames = correctNames(sc, givenNames, executor);
+		return renameCorrected(givenFiles, correctNames, journal, executor,
+				writer);
+	}
+
+	// Renames a batch of files to their corrected names as one transaction,
+	// logging the outcome of each changed name and returning the new paths of
+	// the renamed files. Files whose correction collides with another name get
+	// a numbered name.
+	static List<Path> renameCorrected(List<ScanEntry> givenFiles,
+			EditList correctNames, Path journal, ExecutorService executor,
+			PrintWriter writer) throws IOException {
+		RenamePlanner planner = new RenamePlanner(journal);
+		List<RenamePlanner.Move> moves = new ArrayList<RenamePlanner.Move>();
+		for (int x = 0; x < givenFiles.size(); x++) {
+			ScanEntry currentEntry = givenFiles.get(x);
+			String given = currentEntry.getStem();
+			String correct = correctNames.getFromList(x);
+			// A name comes back unchanged both when it is already correct and
+			// when nothing is close to it, so neither is logged
+			if (correct.equals(given)) {
+				moves.add(null);
+				continue;
+			}
+			moves.add(planner.add(currentEntry.getPath(),
+					correct + currentEntry.getExtension()));
+		}
+		planner.execute(executor);
+
+		List<Path> renamed = new ArrayList<Path>();
+		for (int x = 0; x < givenFiles.size(); x++) {
+			RenamePlanner.Move move = moves.get(x);
+			if (move == null) {
+				continue;
+			}
+			ScanEntry currentEntry = givenFiles.get(x);
+			String given = currentEntry.getStem();
+			String correct = correctNames.getFromList(x);
+			if (move.isDone()) {
+				renamed.add(move.getTarget());
+				// Name the file when it was numbered to avoid a collision
+				String name = move.getTarget().getFileName().toString();
+				String numbered = name.equals(correct
+						+ currentEntry.getExtension()) ? "" : " as \"" + name
+						+ "\"";
+				writer.append("[" + System.currentTimeMillis()
+						+ "]: Corrected \"" + given + "\" to \"" + correct
+						+ "\"" + numbered + "\n");
+			} else {
+				writer.append("[" + System.currentTimeMillis()
+						+ "]: Could not rename \"" + given + "\" to \""
+						+ correct + "\"\n");
+			}
+		}
+		return renamed;
+	}
+
+	// Finishes the renames of a run that was interrupted while renaming, so
+	// no folder is left half renamed
+	static void resumeRenames(Path journal, ExecutorService executor,
+			PrintWriter writer) throws IOException {
+		if (Files.exists(journal)) {
+			int moved = RenamePlanner.resume(journal, executor);
+			writer.append("[" + System.currentTimeMillis() + "]: Resumed "
+					+ moved + " interrupted renames\n");
+		}
+		return;
+	}
+
+	/**
+	 * Corrects every given name on the executor
+	 * 
+	 * @param sc
+	 *            Spelling corrector with its dictionary loaded
+	 * @param givenNames
+	 *            Names to correct
+	 * @param executor
+	 *            Executor to run the corrections on
+	 * @return Corrections in the same order as the given names, with names
+	 *         that could not be corrected left as they were
+	 * @throws Exception
+	 *             If a correction failed or the wait was interrupted
+	 */
+	public static EditList correctNames(final SymSpell sc,
+			final EditList givenNames, ExecutorService executor)
+			throws Exception {
+		final String[] corrections = new String[givenNames.size()];
+
+		// Split the names into ranges, with each task writing only to its own
+		// part of the corrections
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int start = 0; start < corrections.length; start += NAMES_PER_TASK) {
+			final int first = start;
+			final int last = Math.min(start + NAMES_PER_TASK,
+					corrections.length);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (int x = first; x < last; x++) {
+						corrections[x] = sc.Correct(givenNames.getFromList(x));
+					}
+					return null;
+				}
+			});
+		}
+
+		// Wait for every task, rethrowing the first failure
+		for (Future<Void> task : executor.invokeAll(tasks)) {
+			task.get();
+		}
+
+		EditList correctNames = new EditList();
+		for (String correction : corrections) {
+			correctNames.addToList(correction);
+		}
+		return correctNames;
+	}
+}
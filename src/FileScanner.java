@@ -0,0 +1,280 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily lists the files below a folder, reading each folder as a stream so
+ * memory stays the same however many files a folder holds. Only one open
+ * folder is kept per level, so memory grows with the depth and not with the
+ * number of files.
+ */
+public class FileScanner implements Iterator<ScanEntry>, Closeable {
+
+	private final Path root;
+	private final int maxDepth;
+	private PathMatcher include = null;
+	private PathMatcher exclude = null;
+	private PathMatcher skipFolders = null;
+	// Folders read to the end, kept only when asked for
+	private Deque<Path> finished = null;
+
+	// Open folders from the scanned folder down to the one being read
+	private final Deque<DirectoryStream<Path>> streams = new ArrayDeque<DirectoryStream<Path>>();
+	private final Deque<Iterator<Path>> iterators = new ArrayDeque<Iterator<Path>>();
+	private final Deque<Path> folders = new ArrayDeque<Path>();
+	// Number of open folders, from the scanned folder down, below which a
+	// folder could not be read and so will not finish
+	private int unfinished = 0;
+	private ScanEntry next = null;
+
+	/**
+	 * Constructor with the folder to scan
+	 * 
+	 * @param folderName
+	 *            Folder to list the files below
+	 * @param maxDepth
+	 *            How many levels of folders to list, 1 for only the files
+	 *            directly in the folder
+	 * @throws IOException
+	 *             If the folder can't be opened
+	 */
+	FileScanner(String folderName, int maxDepth) throws IOException {
+		if (maxDepth < 1) {
+			throw new IllegalArgumentException("Depth must be at least 1");
+		}
+		this.root = Paths.get(folderName);
+		this.maxDepth = maxDepth;
+		this.open(this.root);
+	}
+
+	/**
+	 * Gets the folder the scanner lists the files below
+	 * 
+	 * @return Scanned folder
+	 */
+	public Path getRoot() {
+		return this.root;
+	}
+
+	/**
+	 * Only lists files whose name matches a glob, such as "*.{jpg,png}"
+	 * 
+	 * @param glob
+	 *            Glob the file name must match, or null to list every file
+	 * @return This scanner
+	 */
+	public FileScanner include(String glob) {
+		this.include = FileScanner.matcher(glob);
+		return this;
+	}
+
+	/**
+	 * Skips files and folders whose name matches a glob, such as ".*"
+	 * 
+	 * @param glob
+	 *            Glob of the names to skip, or null to skip nothing
+	 * @return This scanner
+	 */
+	public FileScanner exclude(String glob) {
+		this.exclude = FileScanner.matcher(glob);
+		return this;
+	}
+
+	/**
+	 * Skips the folders below the scanned folder whose full path matches,
+	 * along with everything in them
+	 * 
+	 * @param folders
+	 *            Matcher of the folders to skip, or null to skip none
+	 * @return This scanner
+	 */
+	public FileScanner skipFolders(PathMatcher folders) {
+		this.skipFolders = folders;
+		return this;
+	}
+
+	/**
+	 * Keeps the folders read to the end, for pollFinishedFolder
+	 * 
+	 * @return This scanner
+	 */
+	public FileScanner trackFinishedFolders() {
+		if (this.finished == null) {
+			this.finished = new ArrayDeque<Path>();
+		}
+		return this;
+	}
+
+	/**
+	 * Gets the next folder that was read to the end, with everything below
+	 * it, before the file hasNext last found. Folders are only kept once
+	 * trackFinishedFolders was called.
+	 * 
+	 * @return Finished folder, or null if no other folder finished
+	 */
+	public Path pollFinishedFolder() {
+		return (this.finished == null) ? null : this.finished.poll();
+	}
+
+	/**
+	 * Checks if there is another file
+	 * 
+	 * @return True if next will return a file
+	 */
+	@Override
+	public boolean hasNext() {
+		if (this.next == null) {
+			this.next = this.advance();
+		}
+		return this.next != null;
+	}
+
+	/**
+	 * Gets the next file
+	 * 
+	 * @return Next file found
+	 */
+	@Override
+	public ScanEntry next() {
+		if (!this.hasNext()) {
+			throw new NoSuchElementException();
+		}
+		ScanEntry entry = this.next;
+		this.next = null;
+		return entry;
+	}
+
+	/**
+	 * Closes every folder still open
+	 */
+	@Override
+	public void close() {
+		while (!this.streams.isEmpty()) {
+			this.pop(false);
+		}
+		return;
+	}
+
+	// Reads entries until a file that passes the globs is found, going into
+	// folders depth first and closing each folder once it is read
+	private ScanEntry advance() {
+		while (!this.iterators.isEmpty()) {
+			Iterator<Path> iterator = this.iterators.peek();
+			Path path;
+			try {
+				if (!iterator.hasNext()) {
+					this.pop(true);
+					continue;
+				}
+				path = iterator.next();
+			} catch (DirectoryIteratorException e) {
+				// Stop reading a folder that fails part way through
+				e.printStackTrace();
+				this.pop(false);
+				continue;
+			}
+
+			Path name = path.getFileName();
+			if ((this.exclude != null) && this.exclude.matches(name)) {
+				continue;
+			}
+			BasicFileAttributes attributes;
+			try {
+				// Links are not followed, so linked folders can't loop
+				attributes = Files.readAttributes(path,
+						BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			} catch (IOException e) {
+				// The file was removed since the folder was read
+				continue;
+			}
+			if (attributes.isDirectory()) {
+				if (this.iterators.size() < this.maxDepth
+						&& (this.skipFolders == null || !this.skipFolders
+								.matches(path))) {
+					try {
+						this.open(path);
+					} catch (IOException e) {
+						e.printStackTrace();
+						this.unfinished = this.folders.size();
+					}
+				}
+				continue;
+			}
+			if (!attributes.isRegularFile()) {
+				continue;
+			}
+			if ((this.include != null) && !this.include.matches(name)) {
+				continue;
+			}
+			return new ScanEntry(path, this.iterators.size());
+		}
+		return null;
+	}
+
+	private void open(Path folder) throws IOException {
+		DirectoryStream<Path> stream = Files.newDirectoryStream(folder);
+		this.streams.push(stream);
+		this.iterators.push(stream.iterator());
+		this.folders.push(folder);
+		return;
+	}
+
+	// Closes the folder being read, which is finished if it and every folder
+	// below it were read to the end
+	private void pop(boolean finished) {
+		this.iterators.pop();
+		if (finished && this.folders.size() > this.unfinished) {
+			if (this.finished != null) {
+				this.finished.add(this.folders.peek());
+			}
+		} else {
+			this.unfinished = this.folders.size() - 1;
+		}
+		this.folders.pop();
+		try {
+			this.streams.pop().close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return;
+	}
+
+	private static PathMatcher matcher(String glob) {
+		if (glob == null) {
+			return null;
+		}
+		return FileSystems.getDefault().getPathMatcher("glob:" + glob);
+	}
+}
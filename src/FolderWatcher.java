@@ -0,0 +1,395 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the file names in a folder tree correct by only correcting the files
+ * created in or moved into it, and reloads the dictionary when its file
+ * changes. Events that come in a burst are corrected
+ * together once the folder is quiet. The last modified time of every folder
+ * whose files were all checked is saved, so after a restart only the folders
+ * changed since are scanned again.
+ */
+public class FolderWatcher implements Closeable {
+
+	// How long the folder must be quiet before a burst of files is corrected
+	private static final long DEBOUNCE_MILLIS = 500;
+	// Most files corrected together, even if the folder is never quiet
+	private static final int BATCH_SIZE = 1 << 14;
+	// How long the dictionary file must be unchanged before it is reloaded,
+	// so a file that is still being written is never loaded
+	private static final long DICTIONARY_QUIET_MILLIS = 2000;
+
+	private final DictionaryHolder holder;
+	private final Path dictionaryFile;
+	private final Path root;
+	private final Path stateFile;
+	private final ExecutorService executor;
+	private final PrintWriter writer;
+	private final WatchService watchService;
+
+	private final Map<WatchKey, Path> folders = new HashMap<WatchKey, Path>();
+	private final WatchKey dictionaryKey;
+	// Reloads run on their own thread, so corrections never wait for them
+	private final ScheduledExecutorService reloader = Executors
+			.newSingleThreadScheduledExecutor();
+	// Reload waiting for the dictionary file to be quiet, which each change
+	// of the file puts off again
+	private ScheduledFuture<?> reload = null;
+	// Generation used by the last pass, to log when a reload is swapped in
+	private long generation = -1;
+	// Last modified time of each folder when its files were last all checked
+	private final Map<Path, Long> folderTimes = new HashMap<Path, Long>();
+	// Times of folders whose files are checked by the pass being gathered
+	private final Map<Path, Long> seenTimes = new HashMap<Path, Long>();
+	private final Set<Path> pending = new LinkedHashSet<Path>();
+	// Files renamed by this watcher, whose events are skipped
+	private final Set<Path> renamed = new HashSet<Path>();
+
+	/**
+	 * Constructor with the folder to watch, which finds the files changed
+	 * since the state was last saved
+	 * 
+	 * @param holder
+	 *            Dictionary to correct with, whose current generation is used
+	 *            for each pass
+	 * @param dictionaryFile
+	 *            File the dictionary is loaded from, which is reloaded into
+	 *            the holder when it changes; it must be outside the watched
+	 *            folder
+	 * @param root
+	 *            Folder to watch, with all of the folders in it
+	 * @param stateFile
+	 *            File the folder times are kept in across restarts
+	 * @param executor
+	 *            Executor to run the corrections on, which is left running
+	 * @param writer
+	 *            Log of the corrections made
+	 * @throws IOException
+	 *             If the folder can't be watched
+	 */
+	FolderWatcher(DictionaryHolder holder, Path dictionaryFile, Path root,
+			Path stateFile, ExecutorService executor, PrintWriter writer)
+			throws IOException {
+		this.holder = holder;
+		this.dictionaryFile = dictionaryFile.toAbsolutePath();
+		this.root = root;
+		this.stateFile = stateFile;
+		this.executor = executor;
+		this.writer = writer;
+		this.watchService = root.getFileSystem().newWatchService();
+		this.dictionaryKey = this.dictionaryFile.getParent().register(
+				this.watchService, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY);
+		this.readState();
+		this.register(root);
+	}
+
+	/**
+	 * Corrects changed files until the thread is interrupted or the watcher
+	 * is closed
+	 */
+	public void run() {
+		try {
+			// Correct the files found while registering the folders first
+			this.correct();
+			while (true) {
+				this.handle(this.watchService.take());
+
+				// Gather events until the folder is quiet or the batch is full
+				WatchKey key;
+				while ((this.pending.size() < FolderWatcher.BATCH_SIZE)
+						&& ((key = this.watchService.poll(
+								FolderWatcher.DEBOUNCE_MILLIS,
+								TimeUnit.MILLISECONDS)) != null)) {
+					this.handle(key);
+				}
+				this.correct();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedWatchServiceException e) {
+			// Closed by another thread
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return;
+	}
+
+	/**
+	 * Stops watching the folder
+	 */
+	@Override
+	public void close() throws IOException {
+		this.watchService.close();
+		this.reloader.shutdown();
+		return;
+	}
+
+	// Adds the files of a watched folder's events to the pending files
+	private void handle(WatchKey key) throws IOException {
+		if (key == this.dictionaryKey) {
+			this.handleDictionary(key);
+			return;
+		}
+		Path folder = this.folders.get(key);
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				// Events were lost, so check every folder again
+				this.folderTimes.clear();
+				this.renamed.clear();
+				this.register(this.root);
+				continue;
+			}
+			if (folder == null) {
+				continue;
+			}
+			try {
+				this.seenTimes.put(folder, Files.getLastModifiedTime(folder,
+						LinkOption.NOFOLLOW_LINKS).toMillis());
+			} catch (IOException e) {
+				// The folder was removed, and its key is cancelled below
+				continue;
+			}
+
+			Path path = folder.resolve((Path) event.context());
+			if (this.renamed.remove(path)) {
+				continue;
+			}
+			if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+				// A new or moved in folder, which may already hold files
+				this.register(path);
+			} else {
+				this.pending.add(path);
+			}
+		}
+		if (!key.reset()) {
+			this.folders.remove(key);
+		}
+		return;
+	}
+
+	// Rebuilds the dictionary in the background once its file has stopped
+	// changing; the current generation is used until the new one is complete
+	private void handleDictionary(WatchKey key) {
+		boolean changed = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if ((event.kind() == StandardWatchEventKinds.OVERFLOW)
+					|| this.dictionaryFile.getFileName().equals(
+							event.context())) {
+				changed = true;
+			}
+		}
+		if (changed) {
+			if (this.reload != null) {
+				this.reload.cancel(false);
+			}
+			final String stamp = this.dictionaryStamp();
+			this.reload = this.reloader.schedule(new Runnable() {
+				@Override
+				public void run() {
+					FolderWatcher.this.reloadDictionary(stamp);
+				}
+			}, FolderWatcher.DICTIONARY_QUIET_MILLIS, TimeUnit.MILLISECONDS);
+		}
+		key.reset();
+		return;
+	}
+
+	// Reloads the dictionary unless its file changed since the event that
+	// scheduled the reload, in which case that change's event schedules
+	// another one
+	private void reloadDictionary(String stamp) {
+		if ((stamp == null) || !stamp.equals(this.dictionaryStamp())) {
+			return;
+		}
+		if (this.holder.reload(this.dictionaryFile.toString()) < 0) {
+			this.writer.append("[" + System.currentTimeMillis()
+					+ "]: Could not reload the dictionary, keeping generation "
+					+ this.holder.current().getNumber() + "\n");
+			this.writer.flush();
+		}
+		return;
+	}
+
+	// Gets the size and last modified time of the dictionary file, or null if
+	// it can't be read
+	private String dictionaryStamp() {
+		try {
+			return Files.size(this.dictionaryFile) + " "
+					+ Files.getLastModifiedTime(this.dictionaryFile).toMillis();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	// Watches a folder and every folder in it, adding the files of folders
+	// changed since their files were last checked to the pending files
+	private void register(Path start) throws IOException {
+		final List<Path> changed = new ArrayList<Path>();
+		Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path folder,
+					BasicFileAttributes attributes) throws IOException {
+				FolderWatcher.this.folders.put(folder.register(
+						FolderWatcher.this.watchService,
+						StandardWatchEventKinds.ENTRY_CREATE), folder);
+				Long checked = FolderWatcher.this.folderTimes.get(folder);
+				long modified = attributes.lastModifiedTime().toMillis();
+				if ((checked == null) || (checked.longValue() != modified)) {
+					changed.add(folder);
+					FolderWatcher.this.seenTimes.put(folder, modified);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e) {
+				e.printStackTrace();
+				return FileVisitResult.CONTINUE;
+			}
+		});
+
+		for (Path folder : changed) {
+			try (FileScanner files = new FileScanner(folder.toString(), 1)) {
+				while (files.hasNext()) {
+					this.pending.add(files.next().getPath());
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		return;
+	}
+
+	// Corrects the pending files and saves the times of the folders they
+	// were in
+	private void correct() throws Exception {
+		EditList givenNames = new EditList();
+		List<ScanEntry> givenFiles = new ArrayList<ScanEntry>();
+		for (Path path : this.pending) {
+			// Skip files removed or renamed again since their event
+			if (!Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS)) {
+				continue;
+			}
+			ScanEntry entry = new ScanEntry(path, this.root.relativize(path)
+					.getNameCount());
+			givenNames.addToList(entry.getStem());
+			givenFiles.add(entry);
+		}
+		this.pending.clear();
+
+		if (givenFiles.size() > 0) {
+			// The whole pass uses one generation, even if a reload is swapped
+			// in while it runs
+			DictionaryHolder.Generation current = this.holder.current();
+			if (current.getNumber() != this.generation) {
+				this.generation = current.getNumber();
+				this.writer.append("[" + System.currentTimeMillis()
+						+ "]: Using dictionary generation " + this.generation
+						+ "\n");
+			}
+			this.renamed.addAll(FileNameCorrect.renameFiles(
+					current.getSymSpell(), givenNames, givenFiles,
+					FileNameCorrect.renameJournal(this.root), this.executor,
+					this.writer));
+			this.writer.flush();
+		}
+
+		// The renames change the folder times again, and their events save
+		// the new times in the next pass
+		if (this.seenTimes.size() > 0) {
+			this.folderTimes.putAll(this.seenTimes);
+			this.seenTimes.clear();
+			this.writeState();
+		}
+		return;
+	}
+
+	private void readState() throws IOException {
+		if (!Files.isRegularFile(this.stateFile)) {
+			return;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(this.stateFile,
+				StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int tab = line.indexOf('\t');
+				if (tab < 0) {
+					continue;
+				}
+				try {
+					this.folderTimes.put(Paths.get(line.substring(tab + 1)),
+							Long.parseLong(line.substring(0, tab)));
+				} catch (NumberFormatException e) {
+					// Lines that can't be read only cause a rescan
+				}
+			}
+		}
+		return;
+	}
+
+	// Writes the folder times to a temporary file that replaces the state
+	// file, so a crash never leaves a partly written state
+	private void writeState() throws IOException {
+		Path temporary = Paths.get(this.stateFile + ".tmp");
+		try (BufferedWriter out = Files.newBufferedWriter(temporary,
+				StandardCharsets.UTF_8)) {
+			for (Map.Entry<Path, Long> folder : this.folderTimes.entrySet()) {
+				out.write(folder.getValue() + "\t" + folder.getKey() + "\n");
+			}
+		}
+		Files.move(temporary, this.stateFile,
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		return;
+	}
+}
@@ -0,0 +1,147 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+/**
+ * Read access to a symmetric delete index, shared by the heap index that is
+ * built from a corpus and the index mapped from a saved file
+ */
+public interface IndexView {
+
+	/**
+	 * Finds the entry of a key
+	 * 
+	 * @param key
+	 *            Term or delete to find
+	 * @return Entry number of the key, or -1 if the key is not in the index
+	 */
+	public int find(String key);
+
+	/**
+	 * Finds the entry of a key given as a range of characters
+	 * 
+	 * @param key
+	 *            Characters holding the key
+	 * @param offset
+	 *            Start of the key in the characters
+	 * @param length
+	 *            Length of the key
+	 * @param hash
+	 *            Hash of the key, as String.hashCode() would compute it
+	 * @return Entry number of the key, or -1 if the key is not in the index
+	 */
+	public int find(char[] key, int offset, int length, int hash);
+
+	/**
+	 * Gets the hash of an entry's key
+	 * 
+	 * @param entry
+	 *            Entry number
+	 * @return Hash of the key, as String.hashCode() would compute it
+	 */
+	public int getHash(int entry);
+
+	/**
+	 * Gets the length of an entry's key
+	 * 
+	 * @param entry
+	 *            Entry number
+	 * @return Length of the key
+	 */
+	public int getKeyLength(int entry);
+
+	/**
+	 * Copies the characters of an entry's key
+	 * 
+	 * @param entry
+	 *            Entry number
+	 * @param chars
+	 *            Array the key is copied to the start of, at least as long as
+	 *            the key
+	 */
+	public void getKey(int entry, char[] chars);
+
+	/**
+	 * Gets the term id stored under an entry
+	 * 
+	 * @param entry
+	 *            Entry number
+	 * @return Term id, or -1 if the entry is only a delete
+	 */
+	public int getTermId(int entry);
+
+	/**
+	 * Gets a term by its id
+	 * 
+	 * @param termId
+	 *            Id of the term
+	 * @return The term
+	 */
+	public String getTerm(int termId);
+
+	/**
+	 * Gets the count of a term
+	 * 
+	 * @param termId
+	 *            Id of the term
+	 * @return How many times the term was added
+	 */
+	public int getCount(int termId);
+
+	/**
+	 * Gets the number of suggestions stored under an entry
+	 * 
+	 * @param entry
+	 *            Entry number
+	 * @return Number of suggestions
+	 */
+	public int getSuggestionCount(int entry);
+
+	/**
+	 * Gets a suggestion stored under an entry
+	 * 
+	 * @param entry
+	 *            Entry number
+	 * @param index
+	 *            Position of the suggestion in the entry's list
+	 * @return Term id of the suggestion
+	 */
+	public int getSuggestion(int entry, int index);
+
+	/**
+	 * Gets the number of entries (terms and deletes) in the index
+	 * 
+	 * @return Number of entries
+	 */
+	public int size();
+
+	/**
+	 * Gets the number of terms in the index
+	 * 
+	 * @return Number of terms
+	 */
+	public int getTermCount();
+
+	/**
+	 * Gets the length of the longest term
+	 * 
+	 * @return Length of the longest term
+	 */
+	public int getMaxLength();
+}
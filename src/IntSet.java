@@ -0,0 +1,124 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+import java.util.Arrays;
+
+/**
+ * Set of non-negative ints that can be cleared in time proportional to the
+ * number of values it holds, so one set can be reused across lookups
+ */
+public class IntSet {
+
+	// Open addressing table of value + 1, 0 marks a free slot
+	private int[] table = new int[64];
+	private int[] slots = new int[32];
+	private int size = 0;
+
+	/**
+	 * Adds a value to the set
+	 * 
+	 * @param value
+	 *            Non-negative value to add
+	 * @return False if the value was already in the set
+	 */
+	public boolean add(int value) {
+		int mask = this.table.length - 1;
+		int slot = IntSet.mix(value) & mask;
+		int stored;
+		while ((stored = this.table[slot]) != 0) {
+			if (stored == value + 1) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		this.table[slot] = value + 1;
+		if (this.size == this.slots.length) {
+			this.slots = Arrays.copyOf(this.slots, this.size * 2);
+		}
+		this.slots[this.size++] = slot;
+
+		// Keep the table at most half full
+		if (this.size * 2 > this.table.length) {
+			this.rehash(this.table.length * 2);
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if a value is in the set
+	 * 
+	 * @param value
+	 *            Non-negative value to look for
+	 * @return True if the value is in the set
+	 */
+	public boolean contains(int value) {
+		int mask = this.table.length - 1;
+		int slot = IntSet.mix(value) & mask;
+		int stored;
+		while ((stored = this.table[slot]) != 0) {
+			if (stored == value + 1) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the number of values in the set
+	 * 
+	 * @return Number of values
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Removes every value from the set
+	 */
+	public void clear() {
+		for (int x = 0; x < this.size; x++) {
+			this.table[this.slots[x]] = 0;
+		}
+		this.size = 0;
+		return;
+	}
+
+	private void rehash(int capacity) {
+		int[] newTable = new int[capacity];
+		int mask = capacity - 1;
+		for (int x = 0; x < this.size; x++) {
+			int stored = this.table[this.slots[x]];
+			int slot = IntSet.mix(stored - 1) & mask;
+			while (newTable[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			newTable[slot] = stored;
+			this.slots[x] = slot;
+		}
+		this.table = newTable;
+		return;
+	}
+
+	private static int mix(int value) {
+		value *= 0x9E3779B9;
+		return value ^ (value >>> 16);
+	}
+}
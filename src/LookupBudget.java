@@ -0,0 +1,179 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+import java.util.Arrays;
+
+/**
+ * Limits on the work of one lookup, so a few inputs that expand into very
+ * many candidates can't hold up the others. A lookup stops once it has taken
+ * as many candidates as allowed or its time is up, and returns the best
+ * suggestions it found so far marked as partial. The largest edit distance
+ * can also be lowered for short inputs, which have few characters to spare
+ * and match almost anything at a large distance. A budget can be shared by
+ * the lookups of one name, which then end by one deadline and take their
+ * candidates from one allowance.
+ */
+public class LookupBudget {
+
+	private final int maxCandidates;
+	private final long timeoutNanos;
+	private final int[] maxDistances;
+	// Whether this is a share of a budget, with a fixed deadline and the
+	// candidates left to its lookups
+	private final boolean shared;
+	private final long deadline;
+	private int candidatesLeft;
+
+	/**
+	 * Constructor with all limits of a lookup
+	 * 
+	 * @param maxCandidates
+	 *            Most candidates taken by a lookup, or 0 for no limit
+	 * @param timeoutNanos
+	 *            Longest time a lookup takes, or 0 for no limit
+	 * @param maxDistances
+	 *            Largest edit distance for each input length, where the last
+	 *            value is used for all longer inputs, or null to use the
+	 *            lookup's distance for every length
+	 */
+	LookupBudget(int maxCandidates, long timeoutNanos, int[] maxDistances) {
+		if ((maxCandidates < 0) || (timeoutNanos < 0)) {
+			throw new IllegalArgumentException("Limits may not be negative");
+		}
+		if ((maxDistances != null) && (maxDistances.length == 0)) {
+			throw new IllegalArgumentException(
+					"Distances must have a value for at least one length");
+		}
+		this.maxCandidates = maxCandidates;
+		this.timeoutNanos = timeoutNanos;
+		this.maxDistances = (maxDistances == null) ? null : Arrays.copyOf(
+				maxDistances, maxDistances.length);
+		this.shared = false;
+		this.deadline = 0;
+		this.candidatesLeft = 0;
+	}
+
+	/**
+	 * Constructor of a share of a budget that starts at a given time
+	 */
+	private LookupBudget(LookupBudget budget, long startNanos) {
+		this.maxCandidates = budget.maxCandidates;
+		this.timeoutNanos = budget.timeoutNanos;
+		this.maxDistances = budget.maxDistances;
+		this.shared = true;
+		this.deadline = budget.getDeadline(startNanos);
+		this.candidatesLeft = budget.getMaxCandidates();
+	}
+
+	/**
+	 * Gets a budget that several lookups share, such as all lookups made for
+	 * the words and parts of one name. It is only used by one thread at a
+	 * time.
+	 * 
+	 * @param startNanos
+	 *            Time the first lookup starts, from System.nanoTime()
+	 * @return Budget whose deadline and candidates are used up by all lookups
+	 *         made with it together
+	 */
+	public LookupBudget share(long startNanos) {
+		return new LookupBudget(this, startNanos);
+	}
+
+	/**
+	 * Charges a shared budget the candidates a lookup took; a budget that is
+	 * not shared gives each lookup its own candidates and is not charged
+	 * 
+	 * @param candidates
+	 *            Number of candidates taken
+	 */
+	public void spend(int candidates) {
+		if (this.shared) {
+			this.candidatesLeft = Math.max(0, this.candidatesLeft - candidates);
+		}
+		return;
+	}
+
+	/**
+	 * Gets the most candidates a lookup takes
+	 * 
+	 * @return Most candidates, the candidates left if the budget is shared,
+	 *         or Integer.MAX_VALUE for no limit
+	 */
+	public int getMaxCandidates() {
+		if (this.shared) {
+			return this.candidatesLeft;
+		}
+		return (this.maxCandidates == 0) ? Integer.MAX_VALUE
+				: this.maxCandidates;
+	}
+
+	/**
+	 * Gets the time a lookup started at a given time has to end by
+	 * 
+	 * @param startNanos
+	 *            Time the lookup started, from System.nanoTime()
+	 * @return Time to end by, the deadline of all lookups if the budget is
+	 *         shared, or Long.MAX_VALUE for no limit
+	 */
+	public long getDeadline(long startNanos) {
+		if (this.shared) {
+			return this.deadline;
+		}
+		return (this.timeoutNanos == 0) ? Long.MAX_VALUE : startNanos
+				+ this.timeoutNanos;
+	}
+
+	/**
+	 * Gets the largest edit distance looked up for an input
+	 * 
+	 * @param length
+	 *            Length of the input
+	 * @param maxDistance
+	 *            Largest edit distance asked for
+	 * @return Largest edit distance for the length, at most maxDistance
+	 */
+	public int getMaxDistance(int length, int maxDistance) {
+		if (this.maxDistances == null) {
+			return maxDistance;
+		}
+		int distance = this.maxDistances[Math.min(length,
+				this.maxDistances.length - 1)];
+		return Math.max(0, Math.min(distance, maxDistance));
+	}
+
+	/**
+	 * Gets the largest edit distance looked up for any input, which is the
+	 * largest an index has to be built for
+	 * 
+	 * @param maxDistance
+	 *            Largest edit distance asked for
+	 * @return Largest edit distance for any length, at most maxDistance
+	 */
+	public int getMaxDistance(int maxDistance) {
+		if (this.maxDistances == null) {
+			return maxDistance;
+		}
+		int distance = 0;
+		for (int x = 0; x < this.maxDistances.length; x++) {
+			distance = Math.max(distance, this.maxDistances[x]);
+		}
+		return Math.min(distance, maxDistance);
+	}
+}
@@ -0,0 +1,79 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+import java.util.List;
+
+/**
+ * The suggestions of a lookup, and whether the lookup ran out of its budget
+ * before it could make sure no better suggestion exists
+ */
+public class LookupResult {
+
+	private final List<SuggestItem> suggestions;
+	private final boolean partial;
+	private final int candidates;
+
+	/**
+	 * Constructor with all values of the result
+	 * 
+	 * @param suggestions
+	 *            Suggestions found, best first
+	 * @param partial
+	 *            True if the lookup stopped before it was complete
+	 * @param candidates
+	 *            Number of candidates the lookup took, 0 if it was answered
+	 *            without searching the index
+	 */
+	LookupResult(List<SuggestItem> suggestions, boolean partial,
+			int candidates) {
+		this.suggestions = suggestions;
+		this.partial = partial;
+		this.candidates = candidates;
+	}
+
+	/**
+	 * Gets the suggestions found
+	 * 
+	 * @return Suggestions, best first; when partial, the best of the ones
+	 *         found before the lookup stopped
+	 */
+	public List<SuggestItem> getSuggestions() {
+		return this.suggestions;
+	}
+
+	/**
+	 * Checks if the lookup stopped before it was complete
+	 * 
+	 * @return True if a better suggestion may have been missed
+	 */
+	public boolean isPartial() {
+		return this.partial;
+	}
+
+	/**
+	 * Gets the number of candidates the lookup took, which a budget shared by
+	 * several lookups is charged
+	 * 
+	 * @return Number of candidates taken
+	 */
+	public int getCandidateCount() {
+		return this.candidates;
+	}
+}
@@ -1,27 +1,41 @@
-/*
-Copyright © 2015-2017 Leejae Karinja
-
-This file is part of Java File Correct.
-
-Java File Correct is free software: you can redistribute it and/or modify
-it under the terms of the GNU General Public License as published by
-the Free Software Foundation, either version 3 of the License, or
-(at your option) any later version.
-
-Java File Correct is distributed in the hope that it will be useful,
-but WITHOUT ANY WARRANTY; without even the implied warranty of
-MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
-GNU General Public License for more details.
-
-You should have received a copy of the GNU General Public License
-along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
-*/
-
-public class Main {
-
-	public static void main(String[] args) {
-		FileNameCorrect.correctFileNames("Pics", "Names.txt", 4);
-		return;
-	}
-
-}
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+public class Main {
+
+	public static void main(String[] args) {
+		boolean watch = false;
+		for (String arg : args) {
+			if (arg.equals("--watch")) {
+				watch = true;
+			} else if (arg.equals("--off-heap")) {
+				// Keep the dictionary's index outside the heap
+				FileNameCorrect.setOffHeap(true);
+			}
+		}
+		// Keep correcting new files until stopped when run with --watch
+		if (watch) {
+			FileNameCorrect.watchFileNames("Pics", "Names.txt", 3);
+			return;
+		}
+		FileNameCorrect.correctFileNames("Pics", "Names.txt", 3);
+		return;
+	}
+
+}
@@ -0,0 +1,637 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read only symmetric delete index answered straight from a memory mapped
+ * index file written by DeleteIndex.write, or from buffers holding the same
+ * layout. The file is a header followed by the table, the per-entry
+ * columns, the term counts and term entries, the suggestion pool and the key
+ * characters, each section aligned to 8 bytes.
+ */
+public class MappedIndex implements IndexView {
+
+	public static final int MAGIC = 0x4A464349;
+	public static final int VERSION = 2;
+	public static final int HEADER_SIZE = 64;
+	// Flag of an index whose terms were folded to lower case
+	public static final int FOLDED = 1;
+
+	// Files larger than 2GB are mapped as several segments; sections are
+	// aligned so no value crosses a segment boundary
+	private static final int SEGMENT_BITS = 30;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+	private final ByteBuffer[] segments;
+
+	private final int editDistanceMax;
+	private final int prefixLength;
+	private final int flags;
+	private final int maxLength;
+	private final long checksum;
+	private final int termCount;
+	private final int entries;
+	private final int tableLength;
+	private final int keyPoolSize;
+	private final int listPoolSize;
+
+	// Start of each section in the file
+	private final long table;
+	private final long hashes;
+	private final long keyOffsets;
+	private final long keyLengths;
+	private final long listOffsets;
+	private final long listSizes;
+	private final long termIds;
+	private final long counts;
+	private final long termEntries;
+	private final long listPool;
+	private final long keyPool;
+
+	/**
+	 * Maps an index file
+	 * 
+	 * @param channel
+	 *            Channel of the index file, which may be closed once the
+	 *            constructor returns
+	 * @throws IOException
+	 *             If the file could not be mapped or is not an index file
+	 */
+	MappedIndex(FileChannel channel) throws IOException {
+		this(MappedIndex.map(channel));
+	}
+
+	/**
+	 * Reads an index from buffers holding the layout of an index file
+	 * 
+	 * @param segments
+	 *            Consecutive parts of the index file, each but the last
+	 *            holding exactly 1GB
+	 * @throws IOException
+	 *             If the buffers do not hold an index file
+	 */
+	MappedIndex(ByteBuffer[] segments) throws IOException {
+		long size = 0;
+		for (int x = 0; x < segments.length; x++) {
+			segments[x].order(ByteOrder.LITTLE_ENDIAN);
+			size += segments[x].limit();
+		}
+		if (size < HEADER_SIZE) {
+			throw new IOException("Index file is truncated");
+		}
+		this.segments = segments;
+
+		if (this.getInt(0) != MAGIC || this.getInt(4) != VERSION) {
+			throw new IOException("Not a version " + VERSION + " index file");
+		}
+		this.editDistanceMax = this.getInt(8);
+		this.maxLength = this.getInt(12);
+		this.checksum = this.getLong(16);
+		this.termCount = this.getInt(24);
+		this.entries = this.getInt(28);
+		this.tableLength = this.getInt(32);
+		this.keyPoolSize = this.getInt(36);
+		this.listPoolSize = this.getInt(40);
+		this.prefixLength = this.getInt(44);
+		this.flags = this.getInt(48);
+
+		this.table = HEADER_SIZE;
+		this.hashes = MappedIndex.section(this.table, this.tableLength);
+		this.keyOffsets = MappedIndex.section(this.hashes, this.entries);
+		this.keyLengths = MappedIndex.section(this.keyOffsets, this.entries);
+		this.listOffsets = MappedIndex.section(this.keyLengths, this.entries);
+		this.listSizes = MappedIndex.section(this.listOffsets, this.entries);
+		this.termIds = MappedIndex.section(this.listSizes, this.entries);
+		this.counts = MappedIndex.section(this.termIds, this.entries);
+		this.termEntries = MappedIndex.section(this.counts, this.termCount);
+		this.listPool = MappedIndex.section(this.termEntries, this.termCount);
+		this.keyPool = MappedIndex.section(this.listPool, this.listPoolSize);
+		if (this.keyPool + 2L * this.keyPoolSize > size) {
+			throw new IOException("Index file is truncated");
+		}
+	}
+
+	/**
+	 * Streams an index to a temporary index file and maps it, so a large
+	 * dictionary is read from the page cache instead of filling the heap or
+	 * slowing down garbage collection. The file is deleted once it is mapped,
+	 * and its space is freed when the mapping is no longer used.
+	 * 
+	 * @param index
+	 *            Index to store
+	 * @param editDistanceMax
+	 *            Maximum edit distance the deletes were generated for
+	 * @param prefixLength
+	 *            Length of the term prefixes the deletes were generated from,
+	 *            or 0 for whole terms
+	 * @param folded
+	 *            True if the terms were folded to lower case
+	 * @param checksum
+	 *            Checksum of the corpus the index was built from
+	 * @param directory
+	 *            Directory the temporary file is made in
+	 * @return Index answered from the mapped file
+	 * @throws IOException
+	 *             If the file could not be written or mapped
+	 */
+	public static MappedIndex store(DeleteIndex index, int editDistanceMax,
+			int prefixLength, boolean folded, long checksum, Path directory)
+			throws IOException {
+		Path file = Files.createTempFile(directory, "index", ".tmp");
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			index.write(channel, editDistanceMax, prefixLength, folded,
+					checksum);
+			return new MappedIndex(channel);
+		} finally {
+			try {
+				Files.delete(file);
+			} catch (IOException e) {
+				// Some systems can't delete a mapped file
+				file.toFile().deleteOnExit();
+			}
+		}
+	}
+
+	/**
+	 * Merges an overlay into a new temporary index file and maps it, as
+	 * store does for a heap index. The base and the added terms are read
+	 * entry by entry and written straight to the mapped file, so no copy of
+	 * the dictionary is made on the heap. Added keys that are also base keys
+	 * add their suggestions to the base entry, and the other added keys
+	 * follow the base entries.
+	 * 
+	 * @param overlay
+	 *            Overlay to merge
+	 * @param editDistanceMax
+	 *            Maximum edit distance the deletes were generated for
+	 * @param prefixLength
+	 *            Length of the term prefixes the deletes were generated from,
+	 *            or 0 for whole terms
+	 * @param folded
+	 *            True if the terms were folded to lower case
+	 * @param checksum
+	 *            Checksum of the corpus the index was built from
+	 * @param directory
+	 *            Directory the temporary file is made in
+	 * @return Index answered from the mapped file
+	 * @throws IOException
+	 *             If the file could not be written or mapped, or the merged
+	 *             index is too large for the layout
+	 */
+	public static MappedIndex store(OverlayIndex overlay,
+			int editDistanceMax, int prefixLength, boolean folded,
+			long checksum, Path directory) throws IOException {
+		// Sizes of the merged index, leaving out the shared added keys
+		int baseEntries = overlay.getBase().size();
+		boolean[] shared = new boolean[overlay.size() - baseEntries];
+		int entries = 0;
+		long keyPoolSize = 0;
+		long listPoolSize = 0;
+		for (int entry = 0; entry < overlay.size(); entry++) {
+			if (overlay.isShared(entry)) {
+				shared[entry - baseEntries] = true;
+				continue;
+			}
+			entries++;
+			keyPoolSize += overlay.getKeyLength(entry);
+			int size = overlay.getSuggestionCount(entry);
+			if (size > 1) {
+				listPoolSize += size;
+			}
+		}
+		if ((keyPoolSize > Integer.MAX_VALUE)
+				|| (listPoolSize > Integer.MAX_VALUE)) {
+			throw new IOException("Index is too large for an index file");
+		}
+		int termCount = overlay.getTermCount();
+		int tableLength = DeleteIndex.tableSize(entries);
+
+		long table = HEADER_SIZE;
+		long hashes = MappedIndex.section(table, tableLength);
+		long keyOffsets = MappedIndex.section(hashes, entries);
+		long keyLengths = MappedIndex.section(keyOffsets, entries);
+		long listOffsets = MappedIndex.section(keyLengths, entries);
+		long listSizes = MappedIndex.section(listOffsets, entries);
+		long termIds = MappedIndex.section(listSizes, entries);
+		long counts = MappedIndex.section(termIds, entries);
+		long termEntries = MappedIndex.section(counts, termCount);
+		long listPool = MappedIndex.section(termEntries, termCount);
+		long keyPool = MappedIndex.section(listPool, (int) listPoolSize);
+		long size = keyPool + 2L * keyPoolSize;
+
+		Path file = Files.createTempFile(directory, "index", ".tmp");
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer[] segments = MappedIndex.map(channel,
+					FileChannel.MapMode.READ_WRITE, size);
+			for (int x = 0; x < segments.length; x++) {
+				segments[x].order(ByteOrder.LITTLE_ENDIAN);
+			}
+
+			MappedIndex.putInt(segments, 0, MAGIC);
+			MappedIndex.putInt(segments, 4, VERSION);
+			MappedIndex.putInt(segments, 8, editDistanceMax);
+			MappedIndex.putInt(segments, 12, overlay.getMaxLength());
+			MappedIndex.putLong(segments, 16, checksum);
+			MappedIndex.putInt(segments, 24, termCount);
+			MappedIndex.putInt(segments, 28, entries);
+			MappedIndex.putInt(segments, 32, tableLength);
+			MappedIndex.putInt(segments, 36, (int) keyPoolSize);
+			MappedIndex.putInt(segments, 40, (int) listPoolSize);
+			MappedIndex.putInt(segments, 44, prefixLength);
+			MappedIndex.putInt(segments, 48, folded ? MappedIndex.FOLDED : 0);
+
+			// The file starts out zeroed, so every table slot is free
+			int mask = tableLength - 1;
+			char[] key = new char[Math.max(1, overlay.getMaxLength())];
+			int merged = 0;
+			int keyOffset = 0;
+			int listOffset = 0;
+			for (int entry = 0; entry < overlay.size(); entry++) {
+				if ((entry >= baseEntries) && shared[entry - baseEntries]) {
+					continue;
+				}
+				int hash = overlay.getHash(entry);
+				int slot = DeleteIndex.mix(hash) & mask;
+				while (MappedIndex.getInt(segments, table + 4L * slot) != 0) {
+					slot = (slot + 1) & mask;
+				}
+				MappedIndex.putInt(segments, table + 4L * slot, merged + 1);
+				MappedIndex.putInt(segments, hashes + 4L * merged, hash);
+
+				int length = overlay.getKeyLength(entry);
+				if (length > key.length) {
+					key = new char[length];
+				}
+				overlay.getKey(entry, key);
+				for (int x = 0; x < length; x++) {
+					MappedIndex.putChar(segments, keyPool + 2L
+							* (keyOffset + x), key[x]);
+				}
+				MappedIndex.putInt(segments, keyOffsets + 4L * merged,
+						keyOffset);
+				MappedIndex.putInt(segments, keyLengths + 4L * merged, length);
+				keyOffset += length;
+
+				// A single suggestion is stored inline instead of in the pool
+				int listSize = overlay.getSuggestionCount(entry);
+				MappedIndex.putInt(segments, listSizes + 4L * merged, listSize);
+				if (listSize == 1) {
+					MappedIndex.putInt(segments, listOffsets + 4L * merged,
+							overlay.getSuggestion(entry, 0));
+				} else if (listSize > 1) {
+					MappedIndex.putInt(segments, listOffsets + 4L * merged,
+							listOffset);
+					for (int x = 0; x < listSize; x++) {
+						MappedIndex.putInt(segments, listPool + 4L
+								* (listOffset + x), overlay.getSuggestion(
+								entry, x));
+					}
+					listOffset += listSize;
+				}
+
+				int termId = overlay.getTermId(entry);
+				MappedIndex.putInt(segments, termIds + 4L * merged, termId);
+				if (termId >= 0) {
+					MappedIndex.putInt(segments, termEntries + 4L * termId,
+							merged);
+				}
+				merged++;
+			}
+			for (int termId = 0; termId < termCount; termId++) {
+				MappedIndex.putInt(segments, counts + 4L * termId,
+						overlay.getCount(termId));
+			}
+			return new MappedIndex(segments);
+		} finally {
+			try {
+				Files.delete(file);
+			} catch (IOException e) {
+				// Some systems can't delete a mapped file
+				file.toFile().deleteOnExit();
+			}
+		}
+	}
+
+	/**
+	 * Makes a changeable heap copy of the index, reading the table and
+	 * suggestion lists as they are instead of generating the deletes again
+	 * 
+	 * @return Copy of the index that is not frozen
+	 */
+	public DeleteIndex copy() {
+		List<String> terms = new ArrayList<String>(this.termCount);
+		for (int termId = 0; termId < this.termCount; termId++) {
+			terms.add(this.getTerm(termId));
+		}
+		char[] keyPool = new char[this.keyPoolSize];
+		for (int x = 0; x < keyPool.length; x++) {
+			keyPool[x] = this.getChar(this.keyPool + 2L * x);
+		}
+		return new DeleteIndex(this.getInts(this.table, this.tableLength),
+				this.getInts(this.hashes, this.entries), this.getInts(
+						this.keyOffsets, this.entries), this.getInts(
+						this.keyLengths, this.entries), this.getInts(
+						this.listOffsets, this.entries), this.getInts(
+						this.listSizes, this.entries), this.getInts(
+						this.termIds, this.entries), keyPool, this.getInts(
+						this.listPool, this.listPoolSize), terms,
+				this.getInts(this.counts, this.termCount), this.maxLength);
+	}
+
+	/**
+	 * Gets the maximum edit distance the index was built for
+	 * 
+	 * @return Maximum edit distance
+	 */
+	public int getEditDistanceMax() {
+		return this.editDistanceMax;
+	}
+
+	/**
+	 * Gets the length of the term prefixes the deletes were generated from
+	 * 
+	 * @return Prefix length, or 0 if deletes were generated from whole terms
+	 */
+	public int getPrefixLength() {
+		return this.prefixLength;
+	}
+
+	/**
+	 * Checks if the terms of the index were folded to lower case
+	 * 
+	 * @return True if the terms are all lower case
+	 */
+	public boolean isFolded() {
+		return (this.flags & MappedIndex.FOLDED) != 0;
+	}
+
+	/**
+	 * Gets the checksum of the corpus the index was built from
+	 * 
+	 * @return Corpus checksum
+	 */
+	public long getChecksum() {
+		return this.checksum;
+	}
+
+	@Override
+	public int find(String key) {
+		int hash = key.hashCode();
+		int mask = this.tableLength - 1;
+		int slot = DeleteIndex.mix(hash) & mask;
+		int entry;
+		while ((entry = this.getInt(this.table + 4L * slot)) != 0) {
+			entry--;
+			if (this.getInt(this.hashes + 4L * entry) == hash
+					&& this.keyEquals(entry, key)) {
+				return entry;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	@Override
+	public int find(char[] key, int offset, int length, int hash) {
+		int mask = this.tableLength - 1;
+		int slot = DeleteIndex.mix(hash) & mask;
+		int entry;
+		while ((entry = this.getInt(this.table + 4L * slot)) != 0) {
+			entry--;
+			if (this.getInt(this.hashes + 4L * entry) == hash
+					&& this.keyEquals(entry, key, offset, length)) {
+				return entry;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	@Override
+	public int getHash(int entry) {
+		return this.getInt(this.hashes + 4L * entry);
+	}
+
+	@Override
+	public int getKeyLength(int entry) {
+		return this.getInt(this.keyLengths + 4L * entry);
+	}
+
+	@Override
+	public void getKey(int entry, char[] chars) {
+		int length = this.getKeyLength(entry);
+		long offset = this.keyPool + 2L
+				* this.getInt(this.keyOffsets + 4L * entry);
+		for (int x = 0; x < length; x++) {
+			chars[x] = this.getChar(offset + 2L * x);
+		}
+		return;
+	}
+
+	@Override
+	public int getTermId(int entry) {
+		return this.getInt(this.termIds + 4L * entry);
+	}
+
+	@Override
+	public String getTerm(int termId) {
+		int entry = this.getInt(this.termEntries + 4L * termId);
+		int length = this.getInt(this.keyLengths + 4L * entry);
+		long offset = this.keyPool + 2L
+				* this.getInt(this.keyOffsets + 4L * entry);
+		char[] chars = new char[length];
+		for (int x = 0; x < length; x++) {
+			chars[x] = this.getChar(offset + 2L * x);
+		}
+		return new String(chars);
+	}
+
+	@Override
+	public int getCount(int termId) {
+		return this.getInt(this.counts + 4L * termId);
+	}
+
+	@Override
+	public int getSuggestionCount(int entry) {
+		return this.getInt(this.listSizes + 4L * entry);
+	}
+
+	@Override
+	public int getSuggestion(int entry, int index) {
+		int offset = this.getInt(this.listOffsets + 4L * entry);
+		// A single suggestion is stored inline instead of in the pool
+		if (this.getSuggestionCount(entry) == 1) {
+			return offset;
+		}
+		return this.getInt(this.listPool + 4L * (offset + index));
+	}
+
+	@Override
+	public int size() {
+		return this.entries;
+	}
+
+	@Override
+	public int getTermCount() {
+		return this.termCount;
+	}
+
+	/**
+	 * Gets the size of the index file the index is read from
+	 * 
+	 * @return Size in bytes
+	 */
+	public long byteSize() {
+		long size = 0;
+		for (int x = 0; x < this.segments.length; x++) {
+			size += this.segments[x].limit();
+		}
+		return size;
+	}
+
+	@Override
+	public int getMaxLength() {
+		return this.maxLength;
+	}
+
+	/**
+	 * Compares the characters of an entry's key to a String
+	 */
+	private boolean keyEquals(int entry, String key) {
+		int length = this.getInt(this.keyLengths + 4L * entry);
+		if (length != key.length()) {
+			return false;
+		}
+		long offset = this.keyPool + 2L
+				* this.getInt(this.keyOffsets + 4L * entry);
+		for (int x = 0; x < length; x++) {
+			if (this.getChar(offset + 2L * x) != key.charAt(x)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compares the characters of an entry's key to a range of characters
+	 */
+	private boolean keyEquals(int entry, char[] key, int offset, int length) {
+		if (this.getInt(this.keyLengths + 4L * entry) != length) {
+			return false;
+		}
+		long keyOffset = this.keyPool + 2L
+				* this.getInt(this.keyOffsets + 4L * entry);
+		for (int x = 0; x < length; x++) {
+			if (this.getChar(keyOffset + 2L * x) != key[offset + x]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int[] getInts(long position, int length) {
+		int[] values = new int[length];
+		for (int x = 0; x < length; x++) {
+			values[x] = this.getInt(position + 4L * x);
+		}
+		return values;
+	}
+
+	private int getInt(long position) {
+		return MappedIndex.getInt(this.segments, position);
+	}
+
+	private static int getInt(ByteBuffer[] segments, long position) {
+		return segments[(int) (position >>> SEGMENT_BITS)]
+				.getInt((int) (position & SEGMENT_MASK));
+	}
+
+	private static void putInt(ByteBuffer[] segments, long position,
+			int value) {
+		segments[(int) (position >>> SEGMENT_BITS)].putInt(
+				(int) (position & SEGMENT_MASK), value);
+		return;
+	}
+
+	private static void putLong(ByteBuffer[] segments, long position,
+			long value) {
+		segments[(int) (position >>> SEGMENT_BITS)].putLong(
+				(int) (position & SEGMENT_MASK), value);
+		return;
+	}
+
+	private static void putChar(ByteBuffer[] segments, long position,
+			char value) {
+		segments[(int) (position >>> SEGMENT_BITS)].putChar(
+				(int) (position & SEGMENT_MASK), value);
+		return;
+	}
+
+	private long getLong(long position) {
+		return this.segments[(int) (position >>> SEGMENT_BITS)]
+				.getLong((int) (position & SEGMENT_MASK));
+	}
+
+	private char getChar(long position) {
+		return this.segments[(int) (position >>> SEGMENT_BITS)]
+				.getChar((int) (position & SEGMENT_MASK));
+	}
+
+	/**
+	 * Maps an index file as segments of at most 1GB
+	 */
+	private static ByteBuffer[] map(FileChannel channel) throws IOException {
+		return MappedIndex.map(channel, FileChannel.MapMode.READ_ONLY,
+				channel.size());
+	}
+
+	/**
+	 * Maps the first bytes of a file as segments of at most 1GB, growing the
+	 * file if a writable mapping is larger
+	 */
+	private static ByteBuffer[] map(FileChannel channel,
+			FileChannel.MapMode mode, long size) throws IOException {
+		ByteBuffer[] segments = new ByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_BITS)];
+		for (int x = 0; x < segments.length; x++) {
+			long start = (long) x << SEGMENT_BITS;
+			segments[x] = channel.map(mode, start,
+					Math.min(size - start, 1L << SEGMENT_BITS));
+		}
+		return segments;
+	}
+
+	/**
+	 * Gets the start of the section following one of ints
+	 */
+	private static long section(long start, int length) {
+		return start + 4L * (length + (length & 1));
+	}
+}
@@ -0,0 +1,298 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Corrects a file name one word at a time instead of as a single term. The
+ * name is split on separators, on changes of case and between letters and
+ * digits; each word is looked up on its own, while separators, numbers and
+ * words that can't be corrected are kept as they are. A word that is not
+ * close to any term can also be segmented into several terms that were run
+ * together, such as "jhonsmith" into "john smith".
+ */
+public class NameCorrector {
+
+	// Words longer than this are not segmented, as segmenting takes time
+	// proportional to the square of the word's length
+	private static final int MAX_SEGMENT_LENGTH = 64;
+	// Longest part a word is segmented into, as words in names are rarely
+	// longer, while a dictionary's longest term may be much longer
+	private static final int MAX_PART_LENGTH = 20;
+	// Shortest part a word is segmented into, as names lists hold many
+	// two letter names that would otherwise split ordinary words
+	private static final int MIN_PART_LENGTH = 3;
+	// Cost of each part after the first, counted like an edit, so a word is
+	// only split when the split is clearly better than keeping it
+	private static final int PART_PENALTY = 1;
+
+	private final SymSpell sc;
+	private final boolean segment;
+
+	/**
+	 * Constructor with the corrector words are looked up in
+	 * 
+	 * @param sc
+	 *            Spelling corrector with its dictionary of lower case terms
+	 * @param segment
+	 *            True to segment words that can't be corrected as a whole
+	 */
+	NameCorrector(SymSpell sc, boolean segment) {
+		this.sc = sc;
+		this.segment = segment;
+	}
+
+	/**
+	 * Corrects every word of a name. All lookups made for the name share one
+	 * budget, so the name as a whole is corrected within the limits of a
+	 * single lookup.
+	 * 
+	 * @param name
+	 *            Name to correct, such as "jhon_smtih_2016_IMG"
+	 * @return Name with its words corrected and everything else kept, such as
+	 *         "john_smith_2016_IMG"
+	 */
+	public String correct(String name) {
+		LookupBudget budget = this.sc.GetBudget();
+		if (budget != null) {
+			budget = budget.share(System.nanoTime());
+		}
+		StringBuilder corrected = new StringBuilder(name.length());
+		char separator = NameCorrector.separator(name);
+		int start = 0;
+		while (start < name.length()) {
+			int end = NameCorrector.tokenEnd(name, start);
+			if (Character.isLetter(name.charAt(start))) {
+				this.correctWord(name.substring(start, end), separator,
+						budget, corrected);
+			} else {
+				corrected.append(name, start, end);
+			}
+			start = end;
+		}
+		return corrected.toString();
+	}
+
+	/**
+	 * Gets the largest distance a word of a length is corrected by, so short
+	 * words such as "IMG" have to match a term exactly and are otherwise
+	 * kept
+	 * 
+	 * @param length
+	 *            Length of the word
+	 * @return Largest edit distance
+	 */
+	public int maxDistance(int length) {
+		int distance = (length <= 3) ? 0 : (length <= 5) ? 1 : length / 3;
+		return Math.min(distance, this.sc.EditDistanceMax());
+	}
+
+	/**
+	 * Corrects one word, keeping its case, or segments it when it can't be
+	 * corrected as a whole
+	 */
+	private void correctWord(String word, char separator,
+			LookupBudget budget, StringBuilder corrected) {
+		String lower = word.toLowerCase(Locale.ROOT);
+		SuggestItem suggestion = this.sc.CorrectTerm(lower,
+				this.maxDistance(word.length()), budget);
+		if (suggestion != null) {
+			corrected.append(NameCorrector.withCase(suggestion.getTerm(),
+					word, 0, word.length()));
+			return;
+		}
+		if (this.segment && lower.length() > 1
+				&& lower.length() <= MAX_SEGMENT_LENGTH
+				&& lower.length() == word.length()) {
+			String[] terms = this.segment(lower, budget);
+			if (terms != null) {
+				int offset = 0;
+				for (int x = 0; x < terms.length; x++) {
+					if (x > 0) {
+						corrected.append(separator);
+					}
+					int length = terms[x].length();
+					corrected.append(NameCorrector.withCase(terms[x], word,
+							offset, Math.min(offset + length, word.length())));
+					offset += length;
+				}
+				return;
+			}
+		}
+		corrected.append(word);
+		return;
+	}
+
+	/**
+	 * Splits a word into the terms it most likely holds: the lowest cost
+	 * first, counting each edit and each part after the first, then the most
+	 * common terms. The word is kept instead unless the cost is within the
+	 * word's edit distance. Each part of the word is looked up once however
+	 * many splits share it.
+	 * 
+	 * @return Terms of the word in order, or null if it can't be split into
+	 *         at least two terms within the word's edit distance, or the
+	 *         budget ran out before every part was looked up
+	 */
+	private String[] segment(String word, LookupBudget budget) {
+		int length = word.length();
+		int maxLength = Math.min(this.sc.MaxLength(),
+				NameCorrector.MAX_PART_LENGTH);
+		Map<String, SuggestItem> lookups = new HashMap<String, SuggestItem>();
+
+		// Best split of each suffix of the word, worked out from the end,
+		// where the cost of a suffix counts the edits and a penalty for
+		// every part
+		int[] costs = new int[length + 1];
+		int[] parts = new int[length + 1];
+		double[] logCounts = new double[length + 1];
+		int[] ends = new int[length + 1];
+		String[] terms = new String[length + 1];
+		for (int start = length - 1; start >= 0; start--) {
+			ends[start] = -1;
+			int last = Math.min(length, start + maxLength + 1);
+			for (int end = start + NameCorrector.MIN_PART_LENGTH; end <= last; end++) {
+				if (end < length && ends[end] < 0) {
+					continue;
+				}
+				String part = word.substring(start, end);
+				SuggestItem suggestion;
+				if (lookups.containsKey(part)) {
+					suggestion = lookups.get(part);
+				} else {
+					LookupResult result = this.sc.Lookup(part, Verbosity.TOP,
+							this.maxDistance(part.length()), 1, budget);
+					// The budget is spent, so the best split can't be known
+					if (result.isPartial()) {
+						return null;
+					}
+					List<SuggestItem> suggestions = result.getSuggestions();
+					suggestion = suggestions.isEmpty() ? null : suggestions
+							.get(0);
+					lookups.put(part, suggestion);
+				}
+				if (suggestion == null) {
+					continue;
+				}
+
+				int cost = suggestion.getDistance()
+						+ NameCorrector.PART_PENALTY + costs[end];
+				int count = 1 + parts[end];
+				double logCount = Math.log(Math.max(1, suggestion.getCount()))
+						+ logCounts[end];
+				if (ends[start] < 0 || cost < costs[start]
+						|| (cost == costs[start] && logCount > logCounts[start])) {
+					costs[start] = cost;
+					parts[start] = count;
+					logCounts[start] = logCount;
+					ends[start] = end;
+					terms[start] = suggestion.getTerm();
+				}
+			}
+		}
+
+		if (ends[0] < 0 || parts[0] < 2
+				|| costs[0] - NameCorrector.PART_PENALTY > this
+						.maxDistance(length)) {
+			return null;
+		}
+		String[] split = new String[parts[0]];
+		for (int x = 0, start = 0; x < split.length; x++) {
+			split[x] = terms[start];
+			start = ends[start];
+		}
+		return split;
+	}
+
+	/**
+	 * Finds where the token starting at a position ends: a run of letters
+	 * up to a change from lower to upper case, a run of digits, or a single
+	 * other character
+	 */
+	private static int tokenEnd(String name, int start) {
+		char first = name.charAt(start);
+		int end = start + 1;
+		if (Character.isLetter(first)) {
+			while (end < name.length()) {
+				char c = name.charAt(end);
+				if (!Character.isLetter(c)) {
+					break;
+				}
+				if (Character.isUpperCase(c)) {
+					char previous = name.charAt(end - 1);
+					// "smithJohn" splits before the 'J', "IMGFile" before the
+					// 'F'
+					if (!Character.isUpperCase(previous)) {
+						break;
+					}
+					if (end + 1 < name.length()
+							&& Character.isLowerCase(name.charAt(end + 1))) {
+						break;
+					}
+				}
+				end++;
+			}
+		} else if (Character.isDigit(first)) {
+			while (end < name.length() && Character.isDigit(name.charAt(end))) {
+				end++;
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * Gets the separator segmented words are joined with: the first
+	 * separator of the name, or a space
+	 */
+	private static char separator(String name) {
+		for (int x = 0; x < name.length(); x++) {
+			char c = name.charAt(x);
+			if (!Character.isLetterOrDigit(c)) {
+				return c;
+			}
+		}
+		return ' ';
+	}
+
+	/**
+	 * Gives a lower case term the case of the part of the word it replaces:
+	 * all upper case, capitalized or lower case
+	 */
+	private static String withCase(String term, String word, int start,
+			int end) {
+		if (end - start > 1) {
+			boolean upper = true;
+			for (int x = start; x < end && upper; x++) {
+				upper = Character.isUpperCase(word.charAt(x));
+			}
+			if (upper) {
+				return term.toUpperCase(Locale.ROOT);
+			}
+		}
+		if (start < end && Character.isUpperCase(word.charAt(start))
+				&& term.length() > 0) {
+			return Character.toUpperCase(term.charAt(0)) + term.substring(1);
+		}
+		return term;
+	}
+}
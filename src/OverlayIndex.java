@@ -0,0 +1,371 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+import java.util.Arrays;
+
+/**
+ * Index made of a base index and a snapshot of the terms added since, with
+ * count changes kept on the side. Overlays never change once made; every
+ * change makes a new overlay that shares the base and the added terms, so a
+ * change costs about as much as its own deletes and not the whole dictionary.
+ * Count changes and the links between the two indexes are kept in maps that
+ * share everything but the changed path with the overlay they were made from.
+ * Added terms get the ids after the base terms, and keys only in the added
+ * terms' index get the entry numbers after the base entries.
+ */
+public class OverlayIndex implements IndexView {
+
+	private final IndexView base;
+	private final DeltaIndex.Snapshot delta;
+	private final int baseTerms;
+	private final int baseEntries;
+
+	// Delta entry of each base entry whose key is also in the delta
+	private final IntTrie shared;
+	// Counts of terms changed since they were added to either index
+	private final IntTrie counts;
+
+	/**
+	 * Constructor with the base index and no changes
+	 * 
+	 * @param base
+	 *            Index that is never changed
+	 */
+	OverlayIndex(IndexView base) {
+		this(base, new DeltaIndex().snapshot(), IntTrie.EMPTY, IntTrie.EMPTY);
+	}
+
+	private OverlayIndex(IndexView base, DeltaIndex.Snapshot delta,
+			IntTrie shared,
+			IntTrie counts) {
+		this.base = base;
+		this.delta = delta;
+		this.baseTerms = base.getTermCount();
+		this.baseEntries = base.size();
+		this.shared = shared;
+		this.counts = counts;
+	}
+
+	/**
+	 * Makes an overlay with a newer snapshot of the added terms
+	 * 
+	 * @param delta
+	 *            Snapshot of the index getDelta() was taken of, taken after
+	 *            terms were added to it
+	 * @return New overlay over the same base
+	 */
+	public OverlayIndex withDelta(DeltaIndex.Snapshot delta) {
+		if ((delta.getSource() != this.delta.getSource())
+				|| (delta.size() < this.delta.size())) {
+			throw new IllegalArgumentException(
+					"Snapshot is not newer than the overlay's");
+		}
+		// Link the keys that are in both indexes; entries are only ever
+		// appended, so only the new ones have to be looked up
+		long[] links = new long[delta.size() - this.delta.size()];
+		int linkCount = 0;
+		for (int entry = this.delta.size(); entry < delta.size(); entry++) {
+			int baseEntry = delta.findIn(this.base, entry);
+			if (baseEntry >= 0) {
+				links[linkCount++] = IntTrie.pair(baseEntry, entry);
+			}
+		}
+		return new OverlayIndex(this.base, delta, this.shared.putAll(links,
+				linkCount), this.counts);
+	}
+
+	/**
+	 * Makes an overlay with a changed term count
+	 * 
+	 * @param termId
+	 *            Id of the term
+	 * @param count
+	 *            New count of the term, where 0 removes it from lookups
+	 * @return New overlay over the same base
+	 */
+	public OverlayIndex withCount(int termId, int count) {
+		return new OverlayIndex(this.base, this.delta, this.shared,
+				this.counts.putAll(new long[] { IntTrie.pair(termId, count) }, 1));
+	}
+
+	/**
+	 * Gets the index the overlay is made over
+	 * 
+	 * @return Base index
+	 */
+	public IndexView getBase() {
+		return this.base;
+	}
+
+	/**
+	 * Gets the snapshot of the terms added to the base
+	 * 
+	 * @return Index of added terms, whose term ids start at 0 and whose
+	 *         counts are the ones the terms were added with
+	 */
+	public DeltaIndex.Snapshot getDelta() {
+		return this.delta;
+	}
+
+	/**
+	 * Gets the number of terms in the base
+	 * 
+	 * @return Id of the first added term
+	 */
+	public int getBaseTermCount() {
+		return this.baseTerms;
+	}
+
+	@Override
+	public int find(String key) {
+		int entry = this.base.find(key);
+		if (entry >= 0) {
+			return entry;
+		}
+		entry = this.delta.find(key);
+		return (entry < 0) ? -1 : this.baseEntries + entry;
+	}
+
+	@Override
+	public int find(char[] key, int offset, int length, int hash) {
+		int entry = this.base.find(key, offset, length, hash);
+		if (entry >= 0) {
+			return entry;
+		}
+		entry = this.delta.find(key, offset, length, hash);
+		return (entry < 0) ? -1 : this.baseEntries + entry;
+	}
+
+	/**
+	 * Checks if an entry of the added terms' index has a key that is also in
+	 * the base, so lookups find the base entry and read the entry's
+	 * suggestions through it
+	 * 
+	 * @param entry
+	 *            Entry number
+	 * @return True if the entry is never found by its key
+	 */
+	public boolean isShared(int entry) {
+		return (entry >= this.baseEntries)
+				&& (this.delta.findIn(this.base, entry - this.baseEntries) >= 0);
+	}
+
+	@Override
+	public int getHash(int entry) {
+		if (entry < this.baseEntries) {
+			return this.base.getHash(entry);
+		}
+		return this.delta.getHash(entry - this.baseEntries);
+	}
+
+	@Override
+	public int getKeyLength(int entry) {
+		if (entry < this.baseEntries) {
+			return this.base.getKeyLength(entry);
+		}
+		return this.delta.getKeyLength(entry - this.baseEntries);
+	}
+
+	@Override
+	public void getKey(int entry, char[] chars) {
+		if (entry < this.baseEntries) {
+			this.base.getKey(entry, chars);
+		} else {
+			this.delta.getKey(entry - this.baseEntries, chars);
+		}
+		return;
+	}
+
+	@Override
+	public int getTermId(int entry) {
+		int deltaEntry = entry - this.baseEntries;
+		if (entry < this.baseEntries) {
+			int termId = this.base.getTermId(entry);
+			if (termId >= 0) {
+				return termId;
+			}
+			deltaEntry = this.shared.get(entry);
+			if (deltaEntry < 0) {
+				return -1;
+			}
+		}
+		int termId = this.delta.getTermId(deltaEntry);
+		return (termId < 0) ? -1 : this.baseTerms + termId;
+	}
+
+	@Override
+	public String getTerm(int termId) {
+		if (termId < this.baseTerms) {
+			return this.base.getTerm(termId);
+		}
+		return this.delta.getTerm(termId - this.baseTerms);
+	}
+
+	@Override
+	public int getCount(int termId) {
+		int count = this.counts.get(termId);
+		if (count >= 0) {
+			return count;
+		}
+		if (termId < this.baseTerms) {
+			return this.base.getCount(termId);
+		}
+		return this.delta.getCount(termId - this.baseTerms);
+	}
+
+	@Override
+	public int getSuggestionCount(int entry) {
+		if (entry >= this.baseEntries) {
+			return this.delta.getSuggestionCount(entry - this.baseEntries);
+		}
+		int count = this.base.getSuggestionCount(entry);
+		int deltaEntry = this.shared.get(entry);
+		if (deltaEntry >= 0) {
+			count += this.delta.getSuggestionCount(deltaEntry);
+		}
+		return count;
+	}
+
+	@Override
+	public int getSuggestion(int entry, int index) {
+		if (entry >= this.baseEntries) {
+			return this.baseTerms
+					+ this.delta.getSuggestion(entry - this.baseEntries, index);
+		}
+		// The base suggestions come first, then the delta ones
+		int baseCount = this.base.getSuggestionCount(entry);
+		if (index < baseCount) {
+			return this.base.getSuggestion(entry, index);
+		}
+		return this.baseTerms
+				+ this.delta.getSuggestion(this.shared.get(entry), index
+						- baseCount);
+	}
+
+	/**
+	 * Gets the number of entries, counting keys in both indexes twice
+	 * 
+	 * @return Number of entries
+	 */
+	@Override
+	public int size() {
+		return this.baseEntries + this.delta.size();
+	}
+
+	@Override
+	public int getTermCount() {
+		return this.baseTerms + this.delta.getTermCount();
+	}
+
+	@Override
+	public int getMaxLength() {
+		return Math.max(this.base.getMaxLength(), this.delta.getMaxLength());
+	}
+
+	// Map of non-negative ints to non-negative ints that is never changed; a
+	// change makes a new map sharing every node but the ones on the changed
+	// paths, so it costs a few nodes of 32 slots however large the map is
+	private static final class IntTrie {
+
+		private static final int BITS = 5;
+		private static final int WIDTH = 1 << IntTrie.BITS;
+		private static final int MASK = IntTrie.WIDTH - 1;
+		private static final IntTrie EMPTY = new IntTrie(null, 0);
+
+		// Inner nodes are Object[] and leaves int[] holding ~value, so a free
+		// slot reads back as -1; null while the map is empty
+		private final Object root;
+		// Shift of the key bits that pick a child of the root, 0 for a leaf
+		private final int shift;
+
+		private IntTrie(Object root, int shift) {
+			this.root = root;
+			this.shift = shift;
+		}
+
+		private static long pair(int key, int value) {
+			return ((long) key << 32) | (value & 0xFFFFFFFFL);
+		}
+
+		private int get(int key) {
+			Object node = this.root;
+			if ((node == null) || ((key >>> this.shift) >= IntTrie.WIDTH)) {
+				return -1;
+			}
+			for (int shift = this.shift; shift > 0; shift -= IntTrie.BITS) {
+				node = ((Object[]) node)[(key >>> shift) & IntTrie.MASK];
+				if (node == null) {
+					return -1;
+				}
+			}
+			return ~((int[]) node)[key & IntTrie.MASK];
+		}
+
+		// Makes a map with the first count pairs of key and value added, whose
+		// keys are all different; the pairs are sorted in place
+		private IntTrie putAll(long[] pairs, int count) {
+			if (count == 0) {
+				return this;
+			}
+			// Sorting by key keeps the pairs of each child together, so every
+			// changed node is copied once
+			Arrays.sort(pairs, 0, count);
+			int maxKey = (int) (pairs[count - 1] >>> 32);
+			Object root = this.root;
+			int shift = this.shift;
+			while ((maxKey >>> shift) >= IntTrie.WIDTH) {
+				if (root != null) {
+					Object[] parent = new Object[IntTrie.WIDTH];
+					parent[0] = root;
+					root = parent;
+				}
+				shift += IntTrie.BITS;
+			}
+			return new IntTrie(IntTrie.put(root, shift, pairs, 0, count), shift);
+		}
+
+		private static Object put(Object node, int shift, long[] pairs,
+				int from, int to) {
+			if (shift == 0) {
+				int[] leaf = (node == null) ? new int[IntTrie.WIDTH]
+						: ((int[]) node).clone();
+				for (int x = from; x < to; x++) {
+					leaf[(int) (pairs[x] >>> 32) & IntTrie.MASK] = ~(int) pairs[x];
+				}
+				return leaf;
+			}
+			Object[] inner = (node == null) ? new Object[IntTrie.WIDTH]
+					: ((Object[]) node).clone();
+			int x = from;
+			while (x < to) {
+				int child = ((int) (pairs[x] >>> 32) >>> shift) & IntTrie.MASK;
+				int end = x + 1;
+				while ((end < to)
+						&& ((((int) (pairs[end] >>> 32) >>> shift) & IntTrie.MASK) == child)) {
+					end++;
+				}
+				inner[child] = IntTrie.put(inner[child], shift - IntTrie.BITS,
+						pairs, x, end);
+				x = end;
+			}
+			return inner;
+		}
+	}
+}
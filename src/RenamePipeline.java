@@ -0,0 +1,523 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Corrects and renames files in three stages that run at the same time: the
+ * calling thread scans for files, a pool of workers corrects their names and
+ * a rename thread renames them in batches and writes the log. The stages are
+ * connected by bounded queues, so a stage that gets ahead waits for the next
+ * one and memory stays the same however many files are scanned.
+ */
+public class RenamePipeline {
+
+	// How often a waiting stage checks if another stage failed
+	private static final long POLL_MILLIS = 100;
+	// Marks the end of the files, once for every worker
+	private static final Item END = new Item(null, -1);
+
+	private final SymSpell sc;
+	private final ExecutorService executor;
+	private final int workers;
+	private final ExecutorService movers;
+	private final int batchSize;
+	private final Path journal;
+	private final PrintWriter writer;
+
+	private final ArrayBlockingQueue<Item> scanned;
+	private final ArrayBlockingQueue<Item> corrected;
+	private final Stage scan = new Stage("Scan");
+	private final Stage correct = new Stage("Correct");
+	private final Stage rename = new Stage("Rename");
+
+	// First failure of any stage, which stops the others
+	private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+	private long renamed = 0;
+
+	// Optional record of the files and folders done, so a stopped run can
+	// be resumed; files done before are skipped as they are scanned
+	private Checkpoint checkpoint = null;
+	private long skipped = 0;
+	// Folders the scanner finished, each with the number of files queued
+	// before it finished
+	private final ConcurrentLinkedQueue<Finished> finished = new ConcurrentLinkedQueue<Finished>();
+	// Files renamed out of order, and the first file not renamed yet
+	private final PriorityQueue<Long> done = new PriorityQueue<Long>();
+	private long firstNotDone = 0;
+
+	/**
+	 * Constructor with the corrector and where the stages run
+	 * 
+	 * @param sc
+	 *            Spelling corrector with its dictionary loaded
+	 * @param executor
+	 *            Executor to run the correction workers on
+	 * @param workers
+	 *            Number of correction workers
+	 * @param movers
+	 *            Executor the renames are moved on, which must not be the
+	 *            executor of the workers as they can wait for the renames
+	 * @param capacity
+	 *            Most files waiting between two stages
+	 * @param batchSize
+	 *            Most files renamed together as one transaction
+	 * @param journal
+	 *            Journal the renames are written to while they are made
+	 * @param writer
+	 *            Log of the renames, which only the rename thread writes to
+	 *            while the pipeline runs
+	 */
+	RenamePipeline(SymSpell sc, ExecutorService executor, int workers,
+			ExecutorService movers, int capacity, int batchSize, Path journal,
+			PrintWriter writer) {
+		if (workers < 1) {
+			throw new IllegalArgumentException("Need at least one worker");
+		}
+		this.sc = sc;
+		this.executor = executor;
+		this.workers = workers;
+		this.movers = movers;
+		this.batchSize = batchSize;
+		this.journal = journal;
+		this.writer = writer;
+		this.scanned = new ArrayBlockingQueue<Item>(capacity);
+		this.corrected = new ArrayBlockingQueue<Item>(capacity);
+	}
+
+	/**
+	 * Records the files and folders done in a checkpoint, skipping the ones
+	 * it holds from an earlier run
+	 * 
+	 * @param checkpoint
+	 *            Checkpoint to resume from and add to, or null for none
+	 */
+	public void setCheckpoint(Checkpoint checkpoint) {
+		this.checkpoint = checkpoint;
+		return;
+	}
+
+	/**
+	 * Gets the number of files skipped because the checkpoint held them
+	 * 
+	 * @return Number of files skipped
+	 */
+	public long getSkippedCount() {
+		return this.skipped;
+	}
+
+	/**
+	 * Corrects and renames every file, returning once all stages are done
+	 * 
+	 * @param files
+	 *            Scanner of the files to correct, read on the calling thread
+	 * @return Number of files renamed
+	 * @throws Exception
+	 *             The first failure of any stage, after the other stages
+	 *             stopped
+	 */
+	public long run(FileScanner files) throws Exception {
+		if (this.checkpoint != null) {
+			files.skipFolders(this.checkpoint).trackFinishedFolders();
+		}
+
+		Thread renamer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				RenamePipeline.this.renameAll();
+				return;
+			}
+		}, "rename-pipeline");
+		renamer.start();
+
+		List<Future<Void>> tasks = new ArrayList<Future<Void>>();
+		for (int x = 0; x < this.workers; x++) {
+			tasks.add(this.executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					RenamePipeline.this.correctAll();
+					return null;
+				}
+			}));
+		}
+
+		this.scanAll(files);
+
+		// Wait for every stage, even once one failed, so no stage is still
+		// renaming when this returns
+		boolean interrupted = false;
+		for (Future<Void> task : tasks) {
+			while (true) {
+				try {
+					task.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					this.fail(e.getCause());
+					break;
+				}
+			}
+		}
+		while (renamer.isAlive()) {
+			try {
+				renamer.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+
+		Throwable failure = this.failure.get();
+		if (failure instanceof Exception) {
+			throw (Exception) failure;
+		} else if (failure != null) {
+			throw (Error) failure;
+		}
+		return this.renamed;
+	}
+
+	/**
+	 * Gets the scan, correct and rename stages, in that order
+	 * 
+	 * @return Stages of the pipeline
+	 */
+	public List<Stage> getStages() {
+		List<Stage> stages = new ArrayList<Stage>();
+		stages.add(this.scan);
+		stages.add(this.correct);
+		stages.add(this.rename);
+		return stages;
+	}
+
+	// Hands every file to the workers, then one end marker per worker
+	private void scanAll(FileScanner files) {
+		this.scan.begin();
+		try {
+			long queued = 0;
+			while (files.hasNext()) {
+				this.queueFinished(files, queued);
+				ScanEntry file = files.next();
+				if (this.checkpoint != null
+						&& this.checkpoint.matches(file.getPath())) {
+					this.skipped++;
+					continue;
+				}
+				this.scan.add(1);
+				this.put(this.scanned, new Item(file, queued++), this.scan);
+			}
+			this.queueFinished(files, queued);
+			for (int x = 0; x < this.workers; x++) {
+				this.put(this.scanned, RenamePipeline.END, this.scan);
+			}
+		} catch (Throwable e) {
+			this.fail(e);
+		}
+		this.scan.end();
+		return;
+	}
+
+	// Corrects files until an end marker, which is passed on to the renamer
+	private void correctAll() {
+		this.correct.begin();
+		try {
+			Item item;
+			while ((item = this.take(this.scanned, this.correct)) != RenamePipeline.END) {
+				item.correct = this.sc.Correct(item.file.getStem());
+				this.correct.add(1);
+				this.put(this.corrected, item, this.correct);
+			}
+			this.put(this.corrected, RenamePipeline.END, this.correct);
+		} catch (Throwable e) {
+			this.fail(e);
+		}
+		this.correct.end();
+		return;
+	}
+
+	// Renames corrected files until every worker has ended, taking whatever
+	// is queued as one batch
+	private void renameAll() {
+		this.rename.begin();
+		try {
+			List<Item> items = new ArrayList<Item>(this.batchSize);
+			List<ScanEntry> files = new ArrayList<ScanEntry>(this.batchSize);
+			int ended = 0;
+			while (ended < this.workers) {
+				items.add(this.take(this.corrected, this.rename));
+				this.corrected.drainTo(items, this.batchSize - 1);
+
+				EditList corrections = new EditList();
+				for (Item item : items) {
+					if (item == RenamePipeline.END) {
+						ended++;
+					} else {
+						files.add(item.file);
+						corrections.addToList(item.correct);
+					}
+				}
+				if (!files.isEmpty()) {
+					List<Path> renamed = FileNameCorrect.renameCorrected(files,
+							corrections, this.journal, this.movers,
+							this.writer);
+					this.renamed += renamed.size();
+					this.rename.add(files.size());
+					if (this.checkpoint != null) {
+						this.checkpoint(items, renamed);
+					}
+				}
+				items.clear();
+				files.clear();
+			}
+		} catch (Throwable e) {
+			this.fail(e);
+		}
+		this.rename.end();
+		return;
+	}
+
+	// Keeps the folders the scanner finished before the next file is queued
+	private void queueFinished(FileScanner files, long queued) {
+		if (this.checkpoint == null) {
+			return;
+		}
+		Path folder;
+		while ((folder = files.pollFinishedFolder()) != null) {
+			this.finished.add(new Finished(folder, queued));
+		}
+		return;
+	}
+
+	// Records a renamed batch in the checkpoint: the files under both their
+	// old and new names, and every folder whose files are now all renamed
+	private void checkpoint(List<Item> items, List<Path> renamed)
+			throws IOException {
+		for (Item item : items) {
+			if (item != RenamePipeline.END) {
+				this.checkpoint.add(item.file.getPath());
+				this.done.add(item.sequence);
+			}
+		}
+		for (Path path : renamed) {
+			this.checkpoint.add(path);
+		}
+		while (!this.done.isEmpty() && this.done.peek() == this.firstNotDone) {
+			this.done.poll();
+			this.firstNotDone++;
+		}
+		Finished folder;
+		while ((folder = this.finished.peek()) != null
+				&& folder.queued <= this.firstNotDone) {
+			this.finished.poll();
+			this.checkpoint.add(folder.folder);
+		}
+		this.checkpoint.flush();
+		return;
+	}
+
+	/**
+	 * Waits for room in a queue, stopping if another stage failed
+	 */
+	private void put(ArrayBlockingQueue<Item> queue, Item item, Stage stage)
+			throws InterruptedException {
+		long start = System.nanoTime();
+		while (!queue.offer(item, RenamePipeline.POLL_MILLIS,
+				TimeUnit.MILLISECONDS)) {
+			this.checkNotFailed();
+		}
+		stage.waited(System.nanoTime() - start);
+		return;
+	}
+
+	/**
+	 * Waits for a file in a queue, stopping if another stage failed
+	 */
+	private Item take(ArrayBlockingQueue<Item> queue, Stage stage)
+			throws InterruptedException {
+		long start = System.nanoTime();
+		Item item;
+		while ((item = queue.poll(RenamePipeline.POLL_MILLIS,
+				TimeUnit.MILLISECONDS)) == null) {
+			this.checkNotFailed();
+		}
+		stage.waited(System.nanoTime() - start);
+		return item;
+	}
+
+	private void checkNotFailed() {
+		if (this.failure.get() != null) {
+			throw new CancellationException("Another stage failed");
+		}
+		return;
+	}
+
+	private void fail(Throwable e) {
+		this.failure.compareAndSet(null, e);
+		return;
+	}
+
+	/**
+	 * Throughput of one stage of the pipeline
+	 */
+	public static class Stage {
+
+		private final String name;
+		private final LongAdder count = new LongAdder();
+		private final LongAdder waitNanos = new LongAdder();
+		// Span from the first thread starting the stage to the last ending it
+		private final AtomicLong start = new AtomicLong(Long.MAX_VALUE);
+		private final AtomicLong end = new AtomicLong(Long.MIN_VALUE);
+
+		Stage(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Gets the name of the stage
+		 * 
+		 * @return Name of the stage
+		 */
+		public String getName() {
+			return this.name;
+		}
+
+		/**
+		 * Gets the number of files the stage passed on
+		 * 
+		 * @return Number of files
+		 */
+		public long getCount() {
+			return this.count.sum();
+		}
+
+		/**
+		 * Gets the time from the stage starting to it ending
+		 * 
+		 * @return Time in milliseconds, or 0 if the stage did not end
+		 */
+		public long getMillis() {
+			long start = this.start.get();
+			long end = this.end.get();
+			return (end < start) ? 0 : (end - start) / 1000000;
+		}
+
+		/**
+		 * Gets the time the stage's threads spent waiting on a full or an
+		 * empty queue, added up over the threads
+		 * 
+		 * @return Time in milliseconds
+		 */
+		public long getWaitMillis() {
+			return this.waitNanos.sum() / 1000000;
+		}
+
+		/**
+		 * Gets the number of files the stage passed on per second
+		 * 
+		 * @return Files per second
+		 */
+		public long getRate() {
+			return this.getCount() * 1000 / Math.max(1, this.getMillis());
+		}
+
+		@Override
+		public String toString() {
+			return this.name + ": " + this.getCount() + " files in "
+					+ this.getMillis() + "ms, " + this.getRate()
+					+ " files/s, " + this.getWaitMillis() + "ms waiting";
+		}
+
+		private void begin() {
+			// The first thread to start sets the start
+			this.start.compareAndSet(Long.MAX_VALUE, System.nanoTime());
+			return;
+		}
+
+		private void end() {
+			// The last thread to end sets the end
+			long now = System.nanoTime();
+			long last;
+			while ((last = this.end.get()) < now
+					&& !this.end.compareAndSet(last, now)) {
+				continue;
+			}
+			return;
+		}
+
+		private void add(int files) {
+			this.count.add(files);
+			return;
+		}
+
+		private void waited(long nanos) {
+			this.waitNanos.add(nanos);
+			return;
+		}
+	}
+
+	/**
+	 * A file moving through the pipeline, with its correction once made
+	 */
+	private static class Item {
+
+		private final ScanEntry file;
+		// Number of files queued before this one
+		private final long sequence;
+		private String correct = null;
+
+		Item(ScanEntry file, long sequence) {
+			this.file = file;
+			this.sequence = sequence;
+		}
+	}
+
+	/**
+	 * A folder the scanner read to the end, which is done once the files
+	 * queued before it are renamed
+	 */
+	private static class Finished {
+
+		private final Path folder;
+		private final long queued;
+
+		Finished(Path folder, long queued) {
+			this.folder = folder;
+			this.queued = queued;
+		}
+	}
+}
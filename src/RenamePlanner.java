@@ -0,0 +1,610 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Renames many files as one transaction. The whole set of renames is planned
+ * before any file is moved: renames to the same name or to a file that stays
+ * get a numbered name instead, and renames that free the name another rename
+ * needs run first, with cycles broken through a temporary name. The plan is
+ * written to a journal before the first move, and moves run in parallel in
+ * waves whose end is also journaled, so an interrupted transaction can be
+ * resumed or rolled back from its journal.
+ */
+public class RenamePlanner {
+
+	private static final String JOURNAL_HEADER = "renames 1";
+	private static final String WAVE_DONE = "done";
+	private static final String TEMPORARY_PREFIX = ".rename-";
+
+	private final Path journal;
+	private final List<Move> moves = new ArrayList<Move>();
+	private final Map<Path, Move> bySource = new HashMap<Path, Move>();
+	private List<List<Step>> waves = null;
+
+	/**
+	 * Constructor with where the journal is written while renaming
+	 * 
+	 * @param journal
+	 *            Journal file, which must not exist and is deleted once every
+	 *            file is renamed
+	 */
+	RenamePlanner(Path journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * Adds a rename to the transaction
+	 * 
+	 * @param source
+	 *            File to rename
+	 * @param name
+	 *            New name of the file, in the same folder
+	 * @return Rename added, whose target may still change when planned
+	 */
+	public Move add(Path source, String name) {
+		if (this.waves != null) {
+			throw new IllegalStateException("Renames are already planned");
+		}
+		if (this.bySource.containsKey(source)) {
+			throw new IllegalArgumentException("Rename of " + source
+					+ " was already added");
+		}
+		Move move = new Move(source, source.resolveSibling(name));
+		this.moves.add(move);
+		this.bySource.put(source, move);
+		return move;
+	}
+
+	/**
+	 * Plans the renames added: gives every rename a free target, and orders
+	 * the moves in waves that can each run in parallel
+	 * 
+	 * @return Renames in the order they were added, with their final targets
+	 */
+	public List<Move> plan() {
+		if (this.waves != null) {
+			return this.moves;
+		}
+
+		// Give each target to the first rename asking for it; later renames,
+		// and renames to a file that is not renamed itself, are numbered
+		Set<Path> taken = new HashSet<Path>();
+		for (Move move : this.moves) {
+			Path target = move.target;
+			if (!target.equals(move.source)) {
+				for (int x = 2; this.isTaken(target, taken); x++) {
+					target = RenamePlanner.numbered(move.target, x);
+				}
+			}
+			move.target = target;
+			taken.add(target);
+		}
+
+		// A rename into a file that is renamed itself has to wait for it.
+		// These waits form chains and cycles; a cycle is broken by moving one
+		// of its files to a temporary name first.
+		Map<Move, Integer> visited = new HashMap<Move, Integer>();
+		int walk = 0;
+		for (Move move : this.moves) {
+			walk++;
+			Move current = move;
+			while (current != null && !visited.containsKey(current)) {
+				visited.put(current, walk);
+				current = this.blocker(current);
+			}
+			if (current != null && visited.get(current) == walk) {
+				current.temporary = RenamePlanner.temporary(current.source,
+						taken);
+			}
+		}
+
+		// Each move runs in the wave after the move that frees its target
+		List<Step> steps = new ArrayList<Step>();
+		Map<Path, Step> vacating = new HashMap<Path, Step>();
+		for (Move move : this.moves) {
+			if (move.source.equals(move.target)) {
+				move.done = true;
+				continue;
+			}
+			if (move.temporary == null) {
+				Step step = new Step(move.source, move.target);
+				move.steps.add(step);
+				vacating.put(move.source, step);
+			} else {
+				Step first = new Step(move.source, move.temporary);
+				Step second = new Step(move.temporary, move.target);
+				first.wave = 0;
+				move.steps.add(first);
+				move.steps.add(second);
+				vacating.put(move.source, first);
+			}
+			steps.addAll(move.steps);
+		}
+		this.waves = new ArrayList<List<Step>>();
+		List<Step> chain = new ArrayList<Step>();
+		for (Step step : steps) {
+			Step current = step;
+			while (current != null && current.wave < 0) {
+				chain.add(current);
+				current = vacating.get(current.target);
+			}
+			int wave = (current == null) ? -1 : current.wave;
+			for (int x = chain.size() - 1; x >= 0; x--) {
+				chain.get(x).wave = ++wave;
+			}
+			chain.clear();
+		}
+		for (Step step : steps) {
+			while (this.waves.size() <= step.wave) {
+				this.waves.add(new ArrayList<Step>());
+			}
+			this.waves.get(step.wave).add(step);
+		}
+		return this.moves;
+	}
+
+	/**
+	 * Plans the renames if they are not planned yet, then journals the plan
+	 * and moves the files
+	 * 
+	 * @param executor
+	 *            Executor the moves of each wave run on
+	 * @return Renames in the order they were added; renames that could not
+	 *         be made are not done, with their file left under its old name
+	 * @throws IOException
+	 *             If the journal could not be written, in which case the
+	 *             moves made so far can be resumed or rolled back from it
+	 */
+	public List<Move> execute(ExecutorService executor) throws IOException {
+		this.plan();
+		if (this.waves.isEmpty()) {
+			return this.moves;
+		}
+
+		try (FileChannel channel = FileChannel.open(this.journal,
+				StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+			StringBuilder text = new StringBuilder(JOURNAL_HEADER).append('\n');
+			for (List<Step> wave : this.waves) {
+				for (Step step : wave) {
+					text.append(step.wave).append('\t');
+					RenamePlanner.escape(text, step.source.toString());
+					text.append('\t');
+					RenamePlanner.escape(text, step.target.getFileName()
+							.toString());
+					text.append('\n');
+				}
+			}
+			RenamePlanner.append(channel, text);
+
+			for (int x = 0; x < this.waves.size(); x++) {
+				RenamePlanner.run(this.waves.get(x), executor, false);
+				RenamePlanner.append(channel, new StringBuilder(WAVE_DONE)
+						.append('\t').append(x).append('\n'));
+			}
+		}
+
+		// A file whose second move failed is moved back from its temporary
+		// name, so no file is left under a name the user never chose
+		for (Move move : this.moves) {
+			if (move.steps.size() == 2 && move.steps.get(0).done
+					&& !move.steps.get(1).done) {
+				RenamePlanner.move(move.temporary, move.source);
+			}
+			if (!move.steps.isEmpty()) {
+				move.done = move.steps.get(move.steps.size() - 1).done;
+			}
+		}
+		Files.delete(this.journal);
+		return this.moves;
+	}
+
+	/**
+	 * Finishes the transaction of a journal left by an interrupted execute,
+	 * making the moves that were not made yet
+	 * 
+	 * @param journal
+	 *            Journal file, which is deleted once the moves are made
+	 * @param executor
+	 *            Executor the moves of each wave run on
+	 * @return Number of files moved
+	 * @throws IOException
+	 *             If the journal could not be read or deleted
+	 */
+	public static int resume(Path journal, ExecutorService executor)
+			throws IOException {
+		List<List<Step>> waves = new ArrayList<List<Step>>();
+		int done = RenamePlanner.read(journal, waves);
+		int moved = 0;
+		for (int x = done; x < waves.size(); x++) {
+			moved += RenamePlanner.run(waves.get(x), executor, false);
+		}
+		Files.delete(journal);
+		return moved;
+	}
+
+	/**
+	 * Undoes the transaction of a journal left by an interrupted execute,
+	 * moving every file that was moved back in the opposite order
+	 * 
+	 * @param journal
+	 *            Journal file, which is deleted once the moves are undone
+	 * @param executor
+	 *            Executor the moves of each wave run on
+	 * @return Number of files moved back
+	 * @throws IOException
+	 *             If the journal could not be read or deleted
+	 */
+	public static int rollback(Path journal, ExecutorService executor)
+			throws IOException {
+		List<List<Step>> waves = new ArrayList<List<Step>>();
+		RenamePlanner.read(journal, waves);
+		int moved = 0;
+		for (int x = waves.size() - 1; x >= 0; x--) {
+			moved += RenamePlanner.run(waves.get(x), executor, true);
+		}
+		Files.delete(journal);
+		return moved;
+	}
+
+	/**
+	 * Checks if a target is claimed by an earlier rename, or is a file that
+	 * stays where it is
+	 */
+	private boolean isTaken(Path target, Set<Path> taken) {
+		if (taken.contains(target)) {
+			return true;
+		}
+		if (!Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+			return false;
+		}
+		Move move = this.bySource.get(target);
+		return move == null || move.target.equals(move.source);
+	}
+
+	/**
+	 * Gets the rename whose file has to move before a rename can take its
+	 * target
+	 */
+	private Move blocker(Move move) {
+		if (move.source.equals(move.target)) {
+			return null;
+		}
+		return this.bySource.get(move.target);
+	}
+
+	/**
+	 * Runs the moves of one wave in parallel
+	 * 
+	 * @return Number of files moved
+	 */
+	private static int run(List<Step> wave, ExecutorService executor,
+			final boolean undo) throws IOException {
+		List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+		for (final Step step : wave) {
+			tasks.add(new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					// A file already at its destination was moved before an
+					// interruption
+					step.done = undo ? RenamePlanner.move(step.target,
+							step.source) : RenamePlanner.move(step.source,
+							step.target);
+					return step.done;
+				}
+			});
+		}
+
+		int moved = 0;
+		try {
+			for (Future<Boolean> task : executor.invokeAll(tasks)) {
+				if (task.get()) {
+					moved++;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while renaming", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Rename failed", e.getCause());
+		}
+		return moved;
+	}
+
+	/**
+	 * Moves a file if its target is free. The file is linked under its target
+	 * and then unlinked from its source, as making a link never replaces a
+	 * file that took the target meanwhile; where the file can't be linked, it
+	 * is moved without replacing the target instead. A file found only under
+	 * its target was moved before an interruption, and counts as moved.
+	 * 
+	 * @return True if the file was moved
+	 */
+	private static boolean move(Path source, Path target) {
+		try {
+			Files.createLink(target, source);
+		} catch (NoSuchFileException e) {
+			return RenamePlanner.isMoved(source, target);
+		} catch (FileAlreadyExistsException e) {
+			if (RenamePlanner.isMoved(source, target)) {
+				return true;
+			}
+			// A move stopped between linking and unlinking left the file under
+			// both names, and only the source is left to remove
+			if (!RenamePlanner.isLinked(source, target)) {
+				return false;
+			}
+		} catch (UnsupportedOperationException | IOException e) {
+			try {
+				Files.move(source, target);
+				return true;
+			} catch (IOException e2) {
+				return false;
+			}
+		}
+		try {
+			Files.delete(source);
+			return true;
+		} catch (IOException e) {
+			// Leave the file under its source name only
+			try {
+				Files.delete(target);
+			} catch (IOException e2) {
+				e2.printStackTrace();
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Checks if a file is gone from its source and found under its target
+	 */
+	private static boolean isMoved(Path source, Path target) {
+		return !Files.exists(source, LinkOption.NOFOLLOW_LINKS)
+				&& Files.exists(target, LinkOption.NOFOLLOW_LINKS);
+	}
+
+	/**
+	 * Checks if two paths are separate links to the same file, rather than
+	 * one name a file system ignoring case finds under both
+	 */
+	private static boolean isLinked(Path source, Path target) {
+		try {
+			Object key = Files.readAttributes(source,
+					BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS)
+					.fileKey();
+			return (key != null)
+					&& key.equals(Files.readAttributes(target,
+							BasicFileAttributes.class,
+							LinkOption.NOFOLLOW_LINKS).fileKey())
+					&& !source.toRealPath(LinkOption.NOFOLLOW_LINKS).equals(
+							target.toRealPath(LinkOption.NOFOLLOW_LINKS));
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Reads the moves of a journal into waves
+	 * 
+	 * @return Number of waves that were done
+	 */
+	private static int read(Path journal, List<List<Step>> waves)
+			throws IOException {
+		int done = 0;
+		try (BufferedReader reader = Files.newBufferedReader(journal,
+				StandardCharsets.UTF_8)) {
+			String line = reader.readLine();
+			if (!JOURNAL_HEADER.equals(line)) {
+				throw new IOException("Not a rename journal: " + journal);
+			}
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", -1);
+				if (fields[0].equals(WAVE_DONE)) {
+					done = Integer.parseInt(fields[1]) + 1;
+					continue;
+				}
+				// A line cut short by a crash is ignored; no move was made
+				// before the whole plan was written
+				if (fields.length != 3) {
+					continue;
+				}
+				int wave = Integer.parseInt(fields[0]);
+				Path source = Paths.get(RenamePlanner.unescape(fields[1]));
+				Step step = new Step(source, source
+						.resolveSibling(RenamePlanner.unescape(fields[2])));
+				while (waves.size() <= wave) {
+					waves.add(new ArrayList<Step>());
+				}
+				waves.get(wave).add(step);
+			}
+		} catch (NumberFormatException e) {
+			throw new IOException("Damaged rename journal: " + journal, e);
+		}
+		return done;
+	}
+
+	/**
+	 * Appends text to the journal and waits for it to reach the disk
+	 */
+	private static void append(FileChannel channel, CharSequence text)
+			throws IOException {
+		ByteBuffer buffer = StandardCharsets.UTF_8.encode(text.toString());
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		channel.force(false);
+		return;
+	}
+
+	/**
+	 * Appends a value to a journal line, escaping the characters that
+	 * separate fields and lines
+	 */
+	static void escape(StringBuilder text, String value) {
+		for (int x = 0; x < value.length(); x++) {
+			char c = value.charAt(x);
+			if (c == '\\') {
+				text.append("\\\\");
+			} else if (c == '\t') {
+				text.append("\\t");
+			} else if (c == '\n') {
+				text.append("\\n");
+			} else if (c == '\r') {
+				text.append("\\r");
+			} else {
+				text.append(c);
+			}
+		}
+		return;
+	}
+
+	private static String unescape(String value) {
+		StringBuilder text = new StringBuilder(value.length());
+		for (int x = 0; x < value.length(); x++) {
+			char c = value.charAt(x);
+			if (c == '\\' && x + 1 < value.length()) {
+				c = value.charAt(++x);
+				if (c == 't') {
+					c = '\t';
+				} else if (c == 'n') {
+					c = '\n';
+				} else if (c == 'r') {
+					c = '\r';
+				}
+			}
+			text.append(c);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Gets a target with a number added before its extension, such as
+	 * "name (2).jpg"
+	 */
+	private static Path numbered(Path target, int number) {
+		String name = target.getFileName().toString();
+		int dot = name.lastIndexOf('.');
+		if (dot <= 0) {
+			return target.resolveSibling(name + " (" + number + ")");
+		}
+		return target.resolveSibling(name.substring(0, dot) + " (" + number
+				+ ")" + name.substring(dot));
+	}
+
+	/**
+	 * Gets a free temporary name next to a file
+	 */
+	private static Path temporary(Path source, Set<Path> taken) {
+		for (int x = 0;; x++) {
+			Path temporary = source.resolveSibling(TEMPORARY_PREFIX + x + "-"
+					+ source.getFileName());
+			if (!taken.contains(temporary)
+					&& !Files.exists(temporary, LinkOption.NOFOLLOW_LINKS)) {
+				taken.add(temporary);
+				return temporary;
+			}
+		}
+	}
+
+	/**
+	 * A file to rename, as added to the planner
+	 */
+	public static class Move {
+
+		private final Path source;
+		private Path target;
+		private Path temporary = null;
+		private boolean done = false;
+		private final List<Step> steps = new ArrayList<Step>(2);
+
+		Move(Path source, Path target) {
+			this.source = source;
+			this.target = target;
+		}
+
+		/**
+		 * Gets the file to rename
+		 * 
+		 * @return Path of the file before the rename
+		 */
+		public Path getSource() {
+			return this.source;
+		}
+
+		/**
+		 * Gets where the file is renamed to, which planning may have numbered
+		 * to avoid a collision
+		 * 
+		 * @return Path of the file after the rename
+		 */
+		public Path getTarget() {
+			return this.target;
+		}
+
+		/**
+		 * Checks if the file was renamed
+		 * 
+		 * @return True once the file is at its target
+		 */
+		public boolean isDone() {
+			return this.done;
+		}
+	}
+
+	/**
+	 * One move of a file, run in a wave after the move freeing its target
+	 */
+	private static class Step {
+
+		private final Path source;
+		private final Path target;
+		private int wave = -1;
+		private volatile boolean done = false;
+
+		Step(Path source, Path target) {
+			this.source = source;
+			this.target = target;
+		}
+	}
+}
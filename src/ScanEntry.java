@@ -0,0 +1,111 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+import java.nio.file.Path;
+
+/**
+ * A file found by a FileScanner, with its name already split into the stem
+ * and the extension
+ */
+public class ScanEntry {
+
+	private final Path path;
+	private final String stem;
+	private final String extension;
+	private final int depth;
+
+	/**
+	 * Constructor with the path of the file found
+	 * 
+	 * @param path
+	 *            Full path of the file
+	 * @param depth
+	 *            Number of folders below the scanned folder, 1 for files
+	 *            directly in it
+	 */
+	ScanEntry(Path path, int depth) {
+		this.path = path;
+		this.depth = depth;
+
+		// The extension starts at the last '.', unless that is the first
+		// character as in hidden files
+		String name = path.getFileName().toString();
+		int dot = name.lastIndexOf('.');
+		if (dot <= 0) {
+			this.stem = name;
+			this.extension = "";
+		} else {
+			this.stem = name.substring(0, dot);
+			this.extension = name.substring(dot);
+		}
+	}
+
+	/**
+	 * Gets the full path of the file
+	 * 
+	 * @return Path of the file
+	 */
+	public Path getPath() {
+		return this.path;
+	}
+
+	/**
+	 * Gets the name of the file without the folder or the extension
+	 * 
+	 * @return File name without extension
+	 */
+	public String getStem() {
+		return this.stem;
+	}
+
+	/**
+	 * Gets the extension of the file, including the leading '.'
+	 * 
+	 * @return File extension, or an empty String if the file has none
+	 */
+	public String getExtension() {
+		return this.extension;
+	}
+
+	/**
+	 * Gets how far below the scanned folder the file is
+	 * 
+	 * @return Number of folders below the scanned folder, 1 for files
+	 *         directly in it
+	 */
+	public int getDepth() {
+		return this.depth;
+	}
+
+	/**
+	 * Creates a FileInOut of the file, which keeps the full path so it can
+	 * be renamed
+	 * 
+	 * @return New FileInOut of the file
+	 */
+	public FileInOut toFileInOut() {
+		return new FileInOut(this.path.toString());
+	}
+
+	@Override
+	public String toString() {
+		return this.path.toString();
+	}
+}
@@ -0,0 +1,100 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+/**
+ * A dictionary term suggested for an input, with its distance from the input
+ * and its count in the dictionary
+ */
+public class SuggestItem implements Comparable<SuggestItem> {
+
+	private final String term;
+	private final int distance;
+	private final int count;
+
+	/**
+	 * Constructor with all values of the suggestion
+	 * 
+	 * @param term
+	 *            Suggested dictionary term
+	 * @param distance
+	 *            Edit distance between the input and the term
+	 * @param count
+	 *            Count of the term in the dictionary
+	 */
+	SuggestItem(String term, int distance, int count) {
+		this.term = term;
+		this.distance = distance;
+		this.count = count;
+	}
+
+	/**
+	 * Gets the suggested term
+	 * 
+	 * @return Suggested dictionary term
+	 */
+	public String getTerm() {
+		return this.term;
+	}
+
+	/**
+	 * Gets the edit distance between the input and the term
+	 * 
+	 * @return Edit distance
+	 */
+	public int getDistance() {
+		return this.distance;
+	}
+
+	/**
+	 * Gets the count of the term in the dictionary
+	 * 
+	 * @return Count of the term
+	 */
+	public int getCount() {
+		return this.count;
+	}
+
+	/**
+	 * Orders suggestions by distance, then by highest count
+	 */
+	@Override
+	public int compareTo(SuggestItem other) {
+		if (this.distance != other.distance) {
+			return Integer.compare(this.distance, other.distance);
+		}
+		return Integer.compare(other.count, this.count);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return (obj instanceof SuggestItem)
+				&& this.term.equals(((SuggestItem) obj).term);
+	}
+
+	@Override
+	public int hashCode() {
+		return this.term.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return this.term + " " + this.distance + " " + this.count;
+	}
+}
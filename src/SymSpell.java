@@ -1,369 +1,1187 @@
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-
-// SymSpell: 1 million times faster through Symmetric Delete spelling correction algorithm
-//
-// The Symmetric Delete spelling correction algorithm reduces the complexity of edit candidate generation and dictionary lookup 
-// for a given Damerau-Levenshtein distance. It is six orders of magnitude faster and language independent.
-// Opposite to other algorithms only deletes are required, no transposes + replaces + inserts.
-// Transposes + replaces + inserts of the input term are transformed into deletes of the dictionary term.
-// Replaces and inserts are expensive and language dependent: e.g. Chinese has 70,000 Unicode Han characters!
-//
-// Copyright (C) 2015 Wolf Garbe
-// Version: 3.0
-// Author: Wolf Garbe <wolf.garbe@faroo.com>
-// Maintainer: Wolf Garbe <wolf.garbe@faroo.com>
-// URL: http://blog.faroo.com/2012/06/07/improved-edit-distance-based-spelling-correction/
-// Description: http://blog.faroo.com/2012/06/07/improved-edit-distance-based-spelling-correction/
-//
-// License:
-// This program is free software; you can redistribute it and/or modify
-// it under the terms of the GNU Lesser General Public License, 
-// version 3.0 (LGPL-3.0) as published by the Free Software Foundation.
-// http://www.opensource.org/licenses/LGPL-3.0
-
-public class SymSpell {
-	private int editDistanceMax = 0;
-
-	SymSpell() {
-
-	}
-
-	SymSpell(int maxDistance) {
-		this.editDistanceMax = maxDistance;
-	}
-
-	private class dictionaryItem {
-		public List<Integer> suggestions = new ArrayList<Integer>();
-		public int count = 0;
-	}
-
-	private class suggestItem {
-		public String term = "";
-		public int distance = 0;
-		public int count = 0;
-
-		@Override
-		public boolean equals(Object obj) {
-			return term.equals(((suggestItem) obj).term);
-		}
-
-		@Override
-		public int hashCode() {
-			return term.hashCode();
-		}
-	}
-
-	private HashMap<String, Object> dictionary = new HashMap<String, Object>();
-	private List<String> wordlist = new ArrayList<String>();
-
-	public int maxlength = 0;
-
-	private boolean CreateDictionaryEntry(String key) {
-		boolean result = false;
-		dictionaryItem value = null;
-		Object valueo;
-		valueo = dictionary.get(key);
-		if (valueo != null) {
-			if (valueo instanceof Integer) {
-				int tmp = (int) valueo;
-				value = new dictionaryItem();
-				value.suggestions.add(tmp);
-				dictionary.put(key, value);
-			}
-
-			else {
-				value = (dictionaryItem) valueo;
-			}
-
-			if (value.count < Integer.MAX_VALUE)
-				value.count++;
-		} else if (wordlist.size() < Integer.MAX_VALUE) {
-			value = new dictionaryItem();
-			value.count++;
-			dictionary.put(key, value);
-
-			if (key.length() > maxlength)
-				maxlength = key.length();
-		}
-		if (value.count == 1) {
-			wordlist.add(key);
-			int keyint = (int) (wordlist.size() - 1);
-
-			result = true;
-
-			for (String delete : Edits(key, 0, new HashSet<String>())) {
-				Object value2;
-				value2 = dictionary.get(delete);
-				if (value2 != null) {
-					if (value2 instanceof Integer) {
-						int tmp = (int) value2;
-						dictionaryItem di = new dictionaryItem();
-						di.suggestions.add(tmp);
-						dictionary.put(delete, di);
-						if (!di.suggestions.contains(keyint))
-							AddLowestDistance(di, key, keyint, delete);
-					} else if (!((dictionaryItem) value2).suggestions
-							.contains(keyint))
-						AddLowestDistance((dictionaryItem) value2, key, keyint,
-								delete);
-				} else {
-					dictionary.put(delete, keyint);
-				}
-
-			}
-		}
-		return result;
-	}
-
-	public void CreateDictionary(String corpus) {
-		File f = new File(corpus);
-		if (!(f.exists() && !f.isDirectory())) {
-			System.out.println("File not found: " + corpus);
-			return;
-		}
-
-		System.out.println("Creating dictionary ...");
-		long startTime = System.currentTimeMillis();
-		long wordCount = 0;
-
-		BufferedReader br = null;
-		try {
-			br = new BufferedReader(new FileReader(corpus));
-			String line;
-			while ((line = br.readLine()) != null) {
-				if (CreateDictionaryEntry(line))
-					wordCount++;
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-		long endTime = System.currentTimeMillis();
-		System.out.println("\rDictionary: " + wordCount + " words, "
-				+ dictionary.size() + " entries, edit distance="
-				+ editDistanceMax + " in " + (endTime - startTime) + "ms ");
-	}
-
-	private void AddLowestDistance(dictionaryItem item, String suggestion,
-			int suggestionint, String delete) {
-		if ((item.suggestions.size() > 0)
-				&& (wordlist.get(item.suggestions.get(0)).length()
-						- delete.length() > suggestion.length()
-						- delete.length()))
-			item.suggestions.clear();
-	}
-
-	private HashSet<String> Edits(String word, int editDistance,
-			HashSet<String> deletes) {
-		editDistance++;
-		if (word.length() > 1) {
-			for (int i = 0; i < word.length(); i++) {
-				String delete = word.substring(0, i) + word.substring(i + 1);
-				if (deletes.add(delete)) {
-					if (editDistance < editDistanceMax)
-						Edits(delete, editDistance, deletes);
-				}
-			}
-		}
-		return deletes;
-	}
-
-	private List<suggestItem> Lookup(String input, int editDistanceMax) {
-		if (input.length() - editDistanceMax > maxlength)
-			return new ArrayList<suggestItem>();
-
-		List<String> candidates = new ArrayList<String>();
-		HashSet<String> hashset1 = new HashSet<String>();
-
-		List<suggestItem> suggestions = new ArrayList<suggestItem>();
-		HashSet<String> hashset2 = new HashSet<String>();
-
-		Object valueo;
-
-		candidates.add(input);
-
-		while (candidates.size() > 0) {
-			String candidate = candidates.remove(0);
-
-			nosort: {
-
-				if ((suggestions.size() > 0)
-						&& (input.length() - candidate.length() > suggestions
-								.get(0).distance))
-					break nosort;
-
-				valueo = dictionary.get(candidate);
-				if (valueo != null) {
-					dictionaryItem value = new dictionaryItem();
-					if (valueo instanceof Integer)
-						value.suggestions.add((int) valueo);
-					else
-						value = (dictionaryItem) valueo;
-
-					if ((value.count > 0) && hashset2.add(candidate)) {
-						suggestItem si = new suggestItem();
-						si.term = candidate;
-						si.count = value.count;
-						si.distance = input.length() - candidate.length();
-						suggestions.add(si);
-						if ((input.length() - candidate.length() == 0))
-							break nosort;
-					}
-
-					Object value2;
-					for (int suggestionint : value.suggestions) {
-						String suggestion = wordlist.get(suggestionint);
-						if (hashset2.add(suggestion)) {
-							int distance = 0;
-							if (suggestion != input) {
-								if (suggestion.length() == candidate.length())
-									distance = input.length()
-											- candidate.length();
-								else if (input.length() == candidate.length())
-									distance = suggestion.length()
-											- candidate.length();
-								else {
-									int ii = 0;
-									int jj = 0;
-									while ((ii < suggestion.length())
-											&& (ii < input.length())
-											&& (suggestion.charAt(ii) == input
-													.charAt(ii)))
-										ii++;
-									while ((jj < suggestion.length() - ii)
-											&& (jj < input.length() - ii)
-											&& (suggestion.charAt(suggestion
-													.length() - jj - 1) == input
-													.charAt(input.length() - jj
-															- 1)))
-										jj++;
-									if ((ii > 0) || (jj > 0)) {
-										distance = DamerauLevenshteinDistance(
-												suggestion.substring(ii,
-														suggestion.length()
-																- jj),
-												input.substring(ii,
-														input.length() - jj));
-									} else
-										distance = DamerauLevenshteinDistance(
-												suggestion, input);
-								}
-							}
-
-							if ((suggestions.size() > 0)
-									&& (suggestions.get(0).distance > distance))
-								suggestions.clear();
-							if ((suggestions.size() > 0)
-									&& (distance > suggestions.get(0).distance))
-								continue;
-
-							if (distance <= editDistanceMax) {
-								value2 = dictionary.get(suggestion);
-								if (value2 != null) {
-									suggestItem si = new suggestItem();
-									si.term = suggestion;
-									si.count = ((dictionaryItem) value2).count;
-									si.distance = distance;
-									suggestions.add(si);
-								}
-							}
-						}
-					}
-				}
-
-				if (input.length() - candidate.length() < editDistanceMax) {
-					if ((suggestions.size() > 0)
-							&& (input.length() - candidate.length() >= suggestions
-									.get(0).distance))
-						continue;
-
-					for (int i = 0; i < candidate.length(); i++) {
-						String delete = candidate.substring(0, i)
-								+ candidate.substring(i + 1);
-						if (hashset1.add(delete))
-							candidates.add(delete);
-					}
-				}
-			}
-		}
-
-		Collections.sort(suggestions, new Comparator<suggestItem>() {
-			public int compare(suggestItem f1, suggestItem f2) {
-				return -(f1.count - f2.count);
-			}
-		});
-
-		if (suggestions.size() > 1)
-			return suggestions.subList(0, 1);
-		else
-			return suggestions;
-	}
-
-	public String Correct(String input) {
-		List<suggestItem> suggestions = null;
-		suggestions = Lookup(input, editDistanceMax);
-
-		for (suggestItem suggestion : suggestions) {
-			System.out.println(suggestion.term + " " + suggestion.distance
-					+ " " + suggestion.count);
-			return suggestion.term;
-		}
-		return input;
-
-	}
-
-	public void createDictionary(String fileName) {
-		CreateDictionary(fileName);
-		return;
-	}
-
-	public static int DamerauLevenshteinDistance(String a, String b) {
-		final int inf = a.length() + b.length() + 1;
-		int[][] H = new int[a.length() + 2][b.length() + 2];
-		for (int i = 0; i <= a.length(); i++) {
-			H[i + 1][1] = i;
-			H[i + 1][0] = inf;
-		}
-		for (int j = 0; j <= b.length(); j++) {
-			H[1][j + 1] = j;
-			H[0][j + 1] = inf;
-		}
-		HashMap<Character, Integer> DA = new HashMap<Character, Integer>();
-		for (int d = 0; d < a.length(); d++)
-			if (!DA.containsKey(a.charAt(d)))
-				DA.put(a.charAt(d), 0);
-
-		for (int d = 0; d < b.length(); d++)
-			if (!DA.containsKey(b.charAt(d)))
-				DA.put(b.charAt(d), 0);
-
-		for (int i = 1; i <= a.length(); i++) {
-			int DB = 0;
-			for (int j = 1; j <= b.length(); j++) {
-				final int i1 = DA.get(b.charAt(j - 1));
-				final int j1 = DB;
-				int d = 1;
-				if (a.charAt(i - 1) == b.charAt(j - 1)) {
-					d = 0;
-					DB = j;
-				}
-				H[i + 1][j + 1] = min(H[i][j] + d, H[i + 1][j] + 1,
-						H[i][j + 1] + 1, H[i1][j1] + ((i - i1 - 1)) + 1
-								+ ((j - j1 - 1)));
-			}
-			DA.put(a.charAt(i - 1), i);
-		}
-		return H[a.length() + 1][b.length() + 1];
-	}
-
-	public static int min(int a, int b, int c, int d) {
-		return Math.min(a, Math.min(b, Math.min(c, d)));
-	}
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+// SymSpell: 1 million times faster through Symmetric Delete spelling correction algorithm
+//
+// The Symmetric Delete spelling correction algorithm reduces the complexity of edit candidate generation and dictionary lookup 
+// for a given Damerau-Levenshtein distance. It is six orders of magnitude faster and language independent.
+// Opposite to other algorithms only deletes are required, no transposes + replaces + inserts.
+// Transposes + replaces + inserts of the input term are transformed into deletes of the dictionary term.
+// Replaces and inserts are expensive and language dependent: e.g. Chinese has 70,000 Unicode Han characters!
+//
+// Copyright (C) 2015 Wolf Garbe
+// Version: 3.0
+// Author: Wolf Garbe <wolf.garbe@faroo.com>
+// Maintainer: Wolf Garbe <wolf.garbe@faroo.com>
+// URL: http://blog.faroo.com/2012/06/07/improved-edit-distance-based-spelling-correction/
+// Description: http://blog.faroo.com/2012/06/07/improved-edit-distance-based-spelling-correction/
+//
+// License:
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License, 
+// version 3.0 (LGPL-3.0) as published by the Free Software Foundation.
+// http://www.opensource.org/licenses/LGPL-3.0
+
+public class SymSpell {
+	private final int editDistanceMax;
+	private final int prefixLength;
+
+	SymSpell() {
+		this(0);
+	}
+
+	SymSpell(int maxDistance) {
+		this(maxDistance, 0);
+	}
+
+	// Only the first prefixLength characters of terms and inputs are used to
+	// generate deletes, which bounds the index size for long terms; the whole
+	// strings are still compared with the distance function
+	SymSpell(int maxDistance, int prefixLength) {
+		if ((prefixLength != 0) && (prefixLength <= maxDistance))
+			throw new IllegalArgumentException(
+					"Prefix length must be greater than the edit distance");
+		this.editDistanceMax = maxDistance;
+		this.prefixLength = prefixLength;
+	}
+
+	// Per-thread buffers reused by every lookup and dictionary entry
+	private static final ThreadLocal<CandidateQueue> candidateQueues = new ThreadLocal<CandidateQueue>() {
+		@Override
+		protected CandidateQueue initialValue() {
+			return new CandidateQueue();
+		}
+	};
+	private static final ThreadLocal<IntSet> suggestionSets = new ThreadLocal<IntSet>() {
+		@Override
+		protected IntSet initialValue() {
+			return new IntSet();
+		}
+	};
+
+	// Lookups only read the published index, which never changes once it is
+	// published, so any number of threads can look up without locking.
+	// Dictionary changes are made to a private copy that is published whole.
+	private volatile IndexView index = new DeleteIndex().freeze();
+	private DeleteIndex dictionary = null;
+	// Counts published indexes, and is only changed after index, so a
+	// version read before index is never newer than the index
+	private volatile long version = 0;
+
+	// Delete entries added by AddTerm before they are merged into the base
+	// index: at least the minimum, and otherwise the base's entries over the
+	// share, so merging copies about share entries per entry added
+	private static final int OVERLAY_ENTRIES_MIN = 1 << 14;
+	private static final int OVERLAY_BASE_SHARE = 8;
+
+	// Whether an overlay is being compacted, and the terms whose counts
+	// changed since it started; only used while holding the lock
+	private boolean compacting = false;
+	private int[] changedTerms = new int[16];
+	private int changedCount = 0;
+
+	// Partitions the deletes of a parallel build are split into by hash, so
+	// that many merges can run at once
+	private static final int PARTITIONS = 64;
+
+	// Optional cache of lookup results, which is keyed by version so results
+	// from an older index are never returned
+	private volatile CorrectionCache cache = null;
+
+	// Optional metrics of lookups and builds
+	private volatile SymSpellMetrics metrics = null;
+
+	// Optional journal of the corrections made by Correct
+	private volatile CorrectionJournal journal = null;
+
+	// Whether published indexes are kept in mapped files outside the heap
+	private volatile boolean offHeap = false;
+	// Where indexes stored off heap are written before they are mapped
+	private volatile Path storeDirectory = Paths.get(System
+			.getProperty("java.io.tmpdir"));
+
+	// Optional limits on the lookups made by Correct
+	private volatile LookupBudget budget = null;
+
+	// Optional corrector Correct hands whole names to, so they are corrected
+	// one word at a time
+	private volatile NameCorrector names = null;
+	// Whether terms are folded to lower case as they are added, which the
+	// words of names are looked up in
+	private volatile boolean foldCase = false;
+
+	// Adds the occurrences of a term read from the corpus and returns its id
+	// if this was the first occurrence, so the caller still has to add the
+	// term's deletes; only new terms are turned into a String
+	private int CreateDictionaryTerm(char[] key, int length, int hash,
+			int occurrences) {
+		int entry = dictionary.insert(key, 0, length, hash);
+		int keyint = dictionary.getTermId(entry);
+		boolean added = false;
+		if (keyint < 0) {
+			if (dictionary.getTermCount() == Integer.MAX_VALUE)
+				return -1;
+			keyint = dictionary.addTerm(entry, new String(key, 0, length));
+			added = true;
+		}
+
+		// A removed term has a count of 0 but still has its deletes
+		long count = (long) dictionary.getCount(keyint) + occurrences;
+		dictionary.setCount(keyint, (int) Math.min(count, Integer.MAX_VALUE));
+
+		return added ? keyint : -1;
+	}
+
+	// Adds the terms of a corpus to the builder without their deletes and
+	// returns the number of lines rejected; the new terms get the ids from the
+	// builder's term count before the call up to its term count after it
+	private long ReadCorpus(String corpus) throws IOException {
+		try (CorpusReader reader = new CorpusReader(corpus)) {
+			while (reader.next()) {
+				char[] term = reader.getTerm();
+				int length = reader.getLength();
+				int hash = reader.getHash();
+				if (foldCase && !IsLowerCase(term, length)) {
+					String folded = new String(term, 0, length)
+							.toLowerCase(Locale.ROOT);
+					term = folded.toCharArray();
+					length = term.length;
+					hash = folded.hashCode();
+				}
+				CreateDictionaryTerm(term, length, hash, reader.getCount());
+			}
+			return reader.getRejected();
+		}
+	}
+
+	private static boolean IsLowerCase(char[] term, int length) {
+		for (int x = 0; x < length;) {
+			int c = Character.codePointAt(term, x, length);
+			if (Character.toLowerCase(c) != c)
+				return false;
+			x += Character.charCount(c);
+		}
+		return true;
+	}
+
+	// Gets a term as it is kept in the dictionary
+	private String Fold(String term) {
+		return foldCase ? term.toLowerCase(Locale.ROOT) : term;
+	}
+
+	private void CreateDictionaryDeletes(DeleteIndex index, String key,
+			int keyint) {
+		CreateDictionaryDeletes(new DeleteIndex[] { index }, key, keyint);
+	}
+
+	// Adds the deletes of a key to the partition of parts each delete's hash
+	// falls in; with a single part every delete goes to it
+	private void CreateDictionaryDeletes(DeleteIndex[] parts, String key,
+			int keyint) {
+		CandidateQueue deletes = candidateQueues.get();
+		for (int delete = QueueDeletes(key); delete < deletes.size(); delete++) {
+			int hash = deletes.getHash(delete);
+			DeleteIndex index = (parts.length == 1) ? parts[0]
+					: parts[DeleteIndex.partition(hash, parts.length)];
+			int deleteEntry = index.insert(deletes.getChars(),
+					deletes.getOffset(delete), deletes.getLength(delete), hash);
+			index.addSuggestion(deleteEntry, keyint);
+		}
+	}
+
+	private void CreateDictionaryDeletes(DeltaIndex delta, String key,
+			int keyint) {
+		CandidateQueue deletes = candidateQueues.get();
+		for (int delete = QueueDeletes(key); delete < deletes.size(); delete++) {
+			int deleteEntry = delta.insert(deletes.getChars(),
+					deletes.getOffset(delete), deletes.getLength(delete),
+					deletes.getHash(delete));
+			delta.addSuggestion(deleteEntry, keyint);
+		}
+	}
+
+	// Queues the deletes of a key on this thread's queue and returns the
+	// number of the first one; the queue skips deletes reached before and
+	// only the index copies the characters it keeps
+	private int QueueDeletes(String key) {
+		int keyLength = key.length();
+		if ((prefixLength > 0) && (keyLength > prefixLength))
+			keyLength = prefixLength;
+
+		// Breadth first over the deletes of the key
+		CandidateQueue deletes = candidateQueues.get();
+		deletes.clear();
+		deletes.add(key, keyLength);
+		int delete;
+		while ((delete = deletes.poll()) >= 0) {
+			int length = deletes.getLength(delete);
+			if ((keyLength - length < editDistanceMax) && (length > 1))
+				deletes.addDeletes(delete);
+		}
+		// A cut off prefix is itself a delete of the key
+		return (keyLength < key.length()) ? 0 : 1;
+	}
+
+	// Builds the deletes of a range of term ids, split by hash into
+	// partitions so each partition can be merged on its own
+	private class deletesTask implements Callable<DeleteIndex[]> {
+		private final int first;
+		private final int last;
+
+		deletesTask(int first, int last) {
+			this.first = first;
+			this.last = last;
+		}
+
+		@Override
+		public DeleteIndex[] call() {
+			DeleteIndex[] parts = new DeleteIndex[PARTITIONS];
+			for (int p = 0; p < parts.length; p++)
+				parts[p] = new DeleteIndex();
+			for (int keyint = first; keyint < last; keyint++)
+				CreateDictionaryDeletes(parts, dictionary.getTerm(keyint),
+						keyint);
+			return parts;
+		}
+	}
+
+	// Merges one partition: the dictionary's own entries in the partition
+	// first, then the partition of every shard in term id order, which keeps
+	// the suggestion lists identical to adding the terms one by one
+	private class mergeTask implements Callable<DeleteIndex> {
+		private final int partition;
+		private final List<Future<DeleteIndex[]>> shards;
+
+		mergeTask(int partition, List<Future<DeleteIndex[]>> shards) {
+			this.partition = partition;
+			this.shards = shards;
+		}
+
+		@Override
+		public DeleteIndex call() throws Exception {
+			DeleteIndex merged = new DeleteIndex();
+			for (int entry = 0; entry < dictionary.size(); entry++)
+				if (DeleteIndex.partition(dictionary.getHash(entry),
+						PARTITIONS) == partition)
+					merged.copyEntry(dictionary, entry, 0);
+			for (Future<DeleteIndex[]> shard : shards)
+				MergeDeletes(merged, shard.get()[partition], 0);
+			return merged;
+		}
+	}
+
+	// Generates the deletes of the terms [first, last) on a pool and replaces
+	// the builder with the result; shards of terms and then partitions of
+	// deletes are worked on in parallel, so only copying the partitions into
+	// one index is left to the calling thread
+	private void CreateDictionaryDeletes(ForkJoinPool pool, int first,
+			int last) throws InterruptedException, ExecutionException {
+		int grain = Math.max(256, (last - first)
+				/ (pool.getParallelism() * 8));
+		List<deletesTask> shardTasks = new ArrayList<deletesTask>();
+		for (int start = first; start < last; start += grain)
+			shardTasks.add(new deletesTask(start, Math.min(last, start
+					+ grain)));
+		List<Future<DeleteIndex[]>> shards = pool.invokeAll(shardTasks);
+
+		List<mergeTask> mergeTasks = new ArrayList<mergeTask>();
+		for (int p = 0; p < PARTITIONS; p++)
+			mergeTasks.add(new mergeTask(p, shards));
+		List<Future<DeleteIndex>> merged = pool.invokeAll(mergeTasks);
+		DeleteIndex[] parts = new DeleteIndex[PARTITIONS];
+		for (int p = 0; p < PARTITIONS; p++)
+			parts[p] = merged.get(p).get();
+		dictionary = DeleteIndex.join(parts, dictionary);
+	}
+
+	// Adds every suggestion of the source index to the target index, as if
+	// the source's terms were added after the target's; source term ids are
+	// moved up by firstTerm
+	private void MergeDeletes(DeleteIndex target, DeleteIndex source,
+			int firstTerm) {
+		for (int sourceEntry = 0; sourceEntry < source.size(); sourceEntry++)
+			target.copyEntry(source, sourceEntry, firstTerm);
+	}
+
+	// Gets the private index that dictionary changes are made to, starting
+	// from a copy of the published index
+	private DeleteIndex Builder() {
+		if (dictionary == null)
+			dictionary = CopyIndex(index);
+		return dictionary;
+	}
+
+	// Freezes the private index and publishes it to lookups. Given an index
+	// file, the index is also saved to it for the corpus, and off heap the
+	// saved file is the one mapped rather than writing the index twice
+	private IndexView Publish(String corpus, Path indexFile, long checksum) {
+		DeleteIndex frozen = dictionary.freeze();
+		dictionary = null;
+		IndexView published = null;
+		if ((indexFile != null) && Save(frozen, corpus, indexFile, checksum)
+				&& offHeap)
+			try (FileChannel channel = FileChannel.open(indexFile,
+					StandardOpenOption.READ)) {
+				published = new MappedIndex(channel);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		if (published == null)
+			published = Store(frozen);
+		Publish(published);
+		return published;
+	}
+
+	// Saves an index for the corpus it was built from and returns whether it
+	// was saved. A corpus changed while it was read is not saved, so it is
+	// rebuilt on the next load; failing to save only costs a rebuild too.
+	private boolean Save(DeleteIndex frozen, String corpus, Path indexFile,
+			long checksum) {
+		Path temporary = Paths.get(indexFile + ".tmp");
+		try {
+			if (Checksum(corpus) != checksum)
+				return false;
+			try (FileChannel channel = FileChannel.open(temporary,
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				frozen.write(channel, editDistanceMax, prefixLength, foldCase,
+						checksum);
+			}
+			Files.move(temporary, indexFile,
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			try {
+				Files.deleteIfExists(temporary);
+			} catch (IOException e2) {
+				e2.printStackTrace();
+			}
+			return false;
+		}
+	}
+
+	// Gets the view lookups read a frozen index through. With off heap
+	// storage on, the index is streamed to a file and mapped, so no copy of
+	// it stays on the heap once the builder is dropped; the heap index is
+	// kept if the file can't be written.
+	private IndexView Store(DeleteIndex frozen) {
+		if (!offHeap)
+			return frozen;
+		try {
+			return MappedIndex.store(frozen, editDistanceMax, prefixLength,
+					foldCase, 0, storeDirectory);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return frozen;
+		}
+	}
+
+	// Merges an overlay into a new base. Off heap, the base and the delta are
+	// streamed into a new index file, so the dictionary is never copied onto
+	// the heap; the heap copy is made if the file can't be written.
+	private IndexView Compact(OverlayIndex overlay) {
+		if (offHeap)
+			try {
+				return MappedIndex.store(overlay, editDistanceMax,
+						prefixLength, foldCase, 0, storeDirectory);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		return CopyIndex(overlay).freeze();
+	}
+
+	private void Publish(IndexView published) {
+		index = published;
+		version++;
+	}
+
+	private void RecordBuild(long millis, int entries, long bytes) {
+		SymSpellMetrics metrics = this.metrics;
+		if ((metrics != null) && metrics.isEnabled())
+			metrics.recordBuild(millis, entries, bytes);
+	}
+
+	// Makes a changeable heap index holding the same terms, counts and
+	// deletes as any index; term ids are kept
+	private DeleteIndex CopyIndex(IndexView view) {
+		if (view instanceof DeleteIndex)
+			return ((DeleteIndex) view).copy();
+		if (view instanceof MappedIndex)
+			return ((MappedIndex) view).copy();
+
+		if (view instanceof OverlayIndex) {
+			// Copy the base with the changed counts, then add the delta terms
+			// and their deletes, which keeps the overlay's term ids
+			OverlayIndex overlay = (OverlayIndex) view;
+			DeleteIndex copy = CopyIndex(overlay.getBase());
+			int first = overlay.getBaseTermCount();
+			for (int termint = 0; termint < first; termint++)
+				copy.setCount(termint, overlay.getCount(termint));
+			for (int termint = first; termint < overlay.getTermCount(); termint++) {
+				String term = overlay.getTerm(termint);
+				int keyint = copy.addTerm(copy.insert(term), term);
+				copy.setCount(keyint, overlay.getCount(termint));
+				CreateDictionaryDeletes(copy, term, keyint);
+			}
+			return copy;
+		}
+
+		// Other indexes are rebuilt from their terms
+		DeleteIndex copy = new DeleteIndex();
+		for (int termint = 0; termint < view.getTermCount(); termint++) {
+			String term = view.getTerm(termint);
+			int keyint = copy.addTerm(copy.insert(term), term);
+			copy.setCount(keyint, view.getCount(termint));
+			CreateDictionaryDeletes(copy, term, keyint);
+		}
+		return copy;
+	}
+
+	// Gets the overlay the next change is made to
+	private OverlayIndex Overlay() {
+		IndexView published = index;
+		if (!(published instanceof OverlayIndex))
+			return new OverlayIndex(published);
+		return (OverlayIndex) published;
+	}
+
+	private static int TermId(IndexView view, String term) {
+		int entry = view.find(term);
+		return (entry < 0) ? -1 : view.getTermId(entry);
+	}
+
+	// Adds one occurrence of a term; only the deletes of a new term are made,
+	// and lookups on other threads see the term once it is complete
+	public boolean AddTerm(String term) {
+		boolean added = AddTermOverlay(Fold(term));
+		CompactOverlay();
+		return added;
+	}
+
+	private synchronized boolean AddTermOverlay(String term) {
+		OverlayIndex overlay = Overlay();
+		int termint = TermId(overlay, term);
+		if (termint >= 0) {
+			int count = overlay.getCount(termint);
+			if (count < Integer.MAX_VALUE)
+				PublishCount(overlay, termint, count + 1);
+			return count == 0;
+		}
+
+		// The delta is only appended to, and the published overlay reads a
+		// snapshot of it that ends before this term
+		DeltaIndex delta = overlay.getDelta().getSource();
+		int keyint = delta.addTerm(delta.insert(term), term, 1);
+		CreateDictionaryDeletes(delta, term, keyint);
+		Publish(overlay.withDelta(delta.snapshot()));
+		return true;
+	}
+
+	// Removes a term from lookups; its deletes are kept in case it is added
+	// again
+	public boolean RemoveTerm(String term) {
+		boolean removed = SetCountOverlay(Fold(term), 0);
+		CompactOverlay();
+		return removed;
+	}
+
+	// Sets the count of a term in the dictionary, which orders suggestions
+	// at the same distance
+	public boolean UpdateCount(String term, int count) {
+		if (count < 1)
+			throw new IllegalArgumentException(
+					"Count must be at least 1, use RemoveTerm to remove a term");
+		boolean updated = SetCountOverlay(Fold(term), count);
+		CompactOverlay();
+		return updated;
+	}
+
+	private synchronized boolean SetCountOverlay(String term, int count) {
+		OverlayIndex overlay = Overlay();
+		int termint = TermId(overlay, term);
+		if ((termint < 0) || (overlay.getCount(termint) == 0))
+			return false;
+		PublishCount(overlay, termint, count);
+		return true;
+	}
+
+	// Publishes a changed count, noting the term while a compaction runs so
+	// the change can be made again on the compacted base
+	private void PublishCount(OverlayIndex overlay, int termint, int count) {
+		Publish(overlay.withCount(termint, count));
+		if (compacting) {
+			if (changedCount == changedTerms.length)
+				changedTerms = Arrays.copyOf(changedTerms, changedCount * 2);
+			changedTerms[changedCount++] = termint;
+		}
+	}
+
+	// Merges the overlay into a new base once its delta is a large enough
+	// share of the base. The merge copies the whole dictionary, so it runs
+	// without the lock while changes and lookups go on; changes made in the
+	// meantime are made again on the new base, which costs about as much as
+	// making them did. Only one merge runs at a time.
+	private void CompactOverlay() {
+		OverlayIndex snapshot;
+		synchronized (this) {
+			IndexView published = index;
+			if (compacting || !(published instanceof OverlayIndex))
+				return;
+			snapshot = (OverlayIndex) published;
+			if (snapshot.getDelta().size() <= Math.max(OVERLAY_ENTRIES_MIN,
+					snapshot.getBase().size() / OVERLAY_BASE_SHARE))
+				return;
+			compacting = true;
+			changedCount = 0;
+		}
+
+		IndexView compacted = null;
+		try {
+			compacted = Compact(snapshot);
+		} finally {
+			synchronized (this) {
+				compacting = false;
+				if (compacted != null)
+					Rebase(snapshot, compacted);
+				changedTerms = new int[16];
+				changedCount = 0;
+			}
+		}
+	}
+
+	// Publishes an overlay over a compacted copy of snapshot holding the
+	// changes made since the snapshot was taken
+	private void Rebase(OverlayIndex snapshot, IndexView compacted) {
+		// A dictionary created or loaded meanwhile replaced the overlay
+		IndexView published = index;
+		if (!(published instanceof OverlayIndex)
+				|| (((OverlayIndex) published).getBase() != snapshot.getBase()))
+			return;
+		OverlayIndex current = (OverlayIndex) published;
+		OverlayIndex rebased = new OverlayIndex(compacted);
+
+		// Terms added since keep their ids, which follow the snapshot's terms
+		int first = snapshot.getTermCount();
+		int last = current.getTermCount();
+		if (last > first) {
+			DeltaIndex delta = rebased.getDelta().getSource();
+			for (int termint = first; termint < last; termint++) {
+				String term = current.getTerm(termint);
+				CreateDictionaryDeletes(delta, term, delta.addTerm(
+						delta.insert(term), term, current.getCount(termint)));
+			}
+			rebased = rebased.withDelta(delta.snapshot());
+		}
+		for (int x = 0; x < changedCount; x++) {
+			int termint = changedTerms[x];
+			int count = current.getCount(termint);
+			if ((termint < first) && (rebased.getCount(termint) != count))
+				rebased = rebased.withCount(termint, count);
+		}
+		Publish(rebased);
+	}
+
+	public synchronized boolean CreateDictionary(String corpus) {
+		return CreateDictionary(corpus, null);
+	}
+
+	// Same as CreateDictionary(String), but generates the deletes of the new
+	// terms on the given pool, or on the calling thread if pool is null.
+	// Returns false if the corpus could not be read or the build failed, in
+	// which case the published dictionary is left as it was
+	public synchronized boolean CreateDictionary(String corpus,
+			ForkJoinPool pool) {
+		return CreateDictionary(corpus, pool, null, 0);
+	}
+
+	// Same as CreateDictionary(String, ForkJoinPool), but also saves the index
+	// to indexFile for the corpus with the given checksum if it is not null
+	private boolean CreateDictionary(String corpus, ForkJoinPool pool,
+			Path indexFile, long checksum) {
+		File f = new File(corpus);
+		if (!(f.exists() && !f.isDirectory())) {
+			System.out.println("File not found: " + corpus);
+			return false;
+		}
+
+		// Indexes stored off heap are written next to the corpus, rather than
+		// to a temporary folder that may itself be held in memory
+		storeDirectory = f.getAbsoluteFile().getParentFile().toPath();
+
+		System.out.println("Creating dictionary ...");
+		long startTime = System.currentTimeMillis();
+		int first = Builder().getTermCount();
+		long rejected = 0;
+		int last = first;
+
+		try {
+			rejected = ReadCorpus(corpus);
+
+			// Deletes are added once all terms are in, term by term
+			last = dictionary.getTermCount();
+			if (pool == null)
+				for (int keyint = first; keyint < last; keyint++)
+					CreateDictionaryDeletes(dictionary,
+							dictionary.getTerm(keyint), keyint);
+			else
+				CreateDictionaryDeletes(pool, first, last);
+		} catch (Exception e) {
+			if (e instanceof InterruptedException)
+				Thread.currentThread().interrupt();
+			e.printStackTrace();
+			// A partly read corpus is never published
+			dictionary = null;
+			return false;
+		}
+		IndexView published = Publish(corpus, indexFile, checksum);
+
+		long endTime = System.currentTimeMillis();
+		long bytes;
+		String storage;
+		if (published instanceof MappedIndex) {
+			bytes = ((MappedIndex) published).byteSize();
+			storage = "KB index off heap";
+		} else {
+			bytes = ((DeleteIndex) published).estimatedBytes();
+			storage = "KB index ("
+					+ (((DeleteIndex) published).estimatedMapBytes() / 1024)
+					+ "KB as HashMap)";
+		}
+		RecordBuild(endTime - startTime, published.size(), bytes);
+		System.out.println("\rDictionary: " + (last - first) + " words, "
+				+ published.size() + " entries, edit distance="
+				+ editDistanceMax + ", prefix length=" + prefixLength
+				+ " in " + (endTime - startTime) + "ms, " + (bytes / 1024)
+				+ storage
+				+ ((rejected > 0) ? ", " + rejected + " lines rejected" : ""));
+		return true;
+	}
+
+	// Maps the index saved for the corpus, or builds the index from the corpus
+	// and saves it when the saved index is missing, was built from a different
+	// corpus or for a different edit distance or prefix length. Returns false
+	// if no dictionary could be loaded, in which case the published
+	// dictionary is left as it was; failing to save the index only costs a
+	// rebuild on the next load.
+	public synchronized boolean LoadDictionary(String corpus, String indexFile) {
+		File f = new File(corpus);
+		if (!(f.exists() && !f.isDirectory())) {
+			System.out.println("File not found: " + corpus);
+			return false;
+		}
+
+		long startTime = System.currentTimeMillis();
+		long checksum = 0;
+		try {
+			checksum = Checksum(corpus);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+
+		if (new File(indexFile).isFile()) {
+			try (FileChannel channel = FileChannel.open(Paths.get(indexFile),
+					StandardOpenOption.READ)) {
+				MappedIndex mapped = new MappedIndex(channel);
+				if ((mapped.getChecksum() == checksum)
+						&& (mapped.getEditDistanceMax() == editDistanceMax)
+						&& (mapped.getPrefixLength() == prefixLength)
+						&& (mapped.isFolded() == foldCase)) {
+					Publish(mapped);
+					dictionary = null;
+					long endTime = System.currentTimeMillis();
+					RecordBuild(endTime - startTime, mapped.size(),
+							channel.size());
+					System.out.println("Dictionary: " + mapped.getTermCount()
+							+ " words, " + mapped.size()
+							+ " entries, edit distance=" + editDistanceMax
+							+ " mapped from " + indexFile + " in "
+							+ (endTime - startTime) + "ms");
+					return true;
+				}
+			} catch (IOException e) {
+				// Unreadable or outdated index files are rebuilt below
+			}
+		}
+
+		// The loaded dictionary replaces the published one rather than adding
+		// to it, as the index is saved for this corpus alone
+		dictionary = new DeleteIndex();
+		return CreateDictionary(corpus, null, Paths.get(indexFile), checksum);
+	}
+
+	// Checksum of a corpus file, which tells the saved index and a stopped
+	// run's checkpoint apart from ones made with another corpus
+	static long Checksum(String file) throws IOException {
+		CRC32 crc = new CRC32();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+		try (FileChannel channel = FileChannel.open(Paths.get(file),
+				StandardOpenOption.READ)) {
+			while (channel.read(buffer) >= 0) {
+				buffer.flip();
+				crc.update(buffer);
+				buffer.clear();
+			}
+		}
+		return crc.getValue();
+	}
+
+	// Looks up every suggestion within the edit distance the dictionary was
+	// built for
+	public List<SuggestItem> Lookup(String input, Verbosity verbosity) {
+		return Lookup(input, verbosity, editDistanceMax, Integer.MAX_VALUE);
+	}
+
+	// Looks up suggestions for an input; maxDistance may not be more than the
+	// edit distance the dictionary was built for, and at most limit
+	// suggestions are returned
+	public List<SuggestItem> Lookup(String input, Verbosity verbosity,
+			int maxDistance, int limit) {
+		return Lookup(input, verbosity, maxDistance, limit, null)
+				.getSuggestions();
+	}
+
+	// Looks up suggestions within a budget, or without one if budget is null;
+	// a lookup that runs out of candidates or time returns the best
+	// suggestions found so far as a partial result, which is not cached. A
+	// shared budget is charged the candidates the lookup took.
+	public LookupResult Lookup(String input, Verbosity verbosity,
+			int maxDistance, int limit, LookupBudget budget) {
+		if (maxDistance < 0)
+			throw new IllegalArgumentException("Distance must be at least 0");
+		if (maxDistance > editDistanceMax)
+			throw new IllegalArgumentException("Distance " + maxDistance
+					+ " is over the dictionary's edit distance "
+					+ editDistanceMax);
+		if (limit < 1)
+			throw new IllegalArgumentException("Limit must be at least 1");
+
+		// Lookups are only timed while metrics are enabled or a budget needs
+		// the time
+		SymSpellMetrics metrics = this.metrics;
+		if ((metrics != null) && !metrics.isEnabled())
+			metrics = null;
+		long startTime = ((metrics != null) || (budget != null)) ? System
+				.nanoTime() : 0;
+		int maxCandidates = Integer.MAX_VALUE;
+		long deadline = Long.MAX_VALUE;
+		if (budget != null) {
+			maxDistance = budget.getMaxDistance(input.length(), maxDistance);
+			maxCandidates = budget.getMaxCandidates();
+			deadline = budget.getDeadline(startTime);
+		}
+
+		LookupResult result = LookupCached(input, verbosity, maxDistance,
+				limit, maxCandidates, deadline, metrics);
+		if (budget != null)
+			budget.spend(result.getCandidateCount());
+		if (metrics != null) {
+			metrics.recordLookup(System.nanoTime() - startTime);
+			if (result.isPartial())
+				metrics.recordPartial();
+		}
+		return result;
+	}
+
+	private LookupResult LookupCached(String input, Verbosity verbosity,
+			int maxDistance, int limit, int maxCandidates, long deadline,
+			SymSpellMetrics metrics) {
+		CorrectionCache cache = this.cache;
+		if (cache == null)
+			return LookupIndex(this.index, input, verbosity, maxDistance,
+					limit, maxCandidates, deadline, metrics);
+
+		// Read the version before the index, so a result from a newer index
+		// can only be cached under an outdated version and is never used
+		long version = this.version;
+		CorrectionCache.Key key = new CorrectionCache.Key(input, verbosity,
+				maxDistance, limit);
+		List<SuggestItem> suggestions = cache.get(key, version);
+		if (suggestions != null)
+			return new LookupResult(suggestions, false, 0);
+		LookupResult result = LookupIndex(this.index, input, verbosity,
+				maxDistance, limit, maxCandidates, deadline, metrics);
+		// A partial result depends on the budget and the time it had, so a
+		// later lookup may do better
+		if (!result.isPartial())
+			cache.put(key, version, result.getSuggestions());
+		return result;
+	}
+
+	// Sets the cache of lookup results, or null to look up every input
+	public void SetCache(CorrectionCache cache) {
+		this.cache = cache;
+	}
+
+	public CorrectionCache GetCache() {
+		return cache;
+	}
+
+	// Keeps the indexes built from now on in mapped index files outside the
+	// heap, so large dictionaries need no large heap and add nothing to
+	// garbage collection pauses. Each index is written to a temporary file
+	// next to the corpus, which is deleted once it is mapped.
+	public synchronized void SetOffHeap(boolean offHeap) {
+		this.offHeap = offHeap;
+	}
+
+	public boolean GetOffHeap() {
+		return offHeap;
+	}
+
+	// Sets the metrics lookups and builds are recorded in, or null to record
+	// nothing
+	public void SetMetrics(SymSpellMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	public SymSpellMetrics GetMetrics() {
+		return metrics;
+	}
+
+	// Sets the journal Correct records its corrections in, or null to record
+	// nothing
+	public void SetJournal(CorrectionJournal journal) {
+		this.journal = journal;
+	}
+
+	public CorrectionJournal GetJournal() {
+		return journal;
+	}
+
+	// Sets the limits on the lookups made by Correct, or null to let them run
+	// until they are complete
+	public void SetBudget(LookupBudget budget) {
+		this.budget = budget;
+	}
+
+	public LookupBudget GetBudget() {
+		return budget;
+	}
+
+	// Makes Correct split names into words and correct each word on its own,
+	// and if segment is set also split words that were run together. Words
+	// are looked up in lower case, so terms are folded to lower case while
+	// tokenizing, which takes effect for dictionaries created or loaded from
+	// then on; the corrected words get back the case they were written in.
+	public void SetTokenize(boolean tokenize, boolean segment) {
+		this.foldCase = tokenize;
+		this.names = tokenize ? new NameCorrector(this, segment) : null;
+	}
+
+	public boolean GetTokenize() {
+		return names != null;
+	}
+
+	public int EditDistanceMax() {
+		return editDistanceMax;
+	}
+
+	// Length of the longest term, which no lookup of a longer input can match
+	// within the edit distance of the difference
+	public int MaxLength() {
+		return index.getMaxLength();
+	}
+
+	// Looks up suggestions in one published index, so the whole lookup sees
+	// one state; the lookup stops early after maxCandidates candidates or at
+	// the deadline, and the work done is added to metrics unless it is null
+	private LookupResult LookupIndex(IndexView index, String input,
+			Verbosity verbosity, int maxDistance, int limit,
+			int maxCandidates, long deadline, SymSpellMetrics metrics) {
+
+		List<SuggestItem> suggestions = new ArrayList<SuggestItem>();
+		if (input.length() - maxDistance > index.getMaxLength()) {
+			if (metrics != null)
+				metrics.recordSearch(0, 0, 0, 1, 0);
+			return new LookupResult(suggestions, false, 0);
+		}
+
+		// Work is counted in locals, which costs next to nothing when it is
+		// not recorded
+		int candidateCount = 0;
+		int probeCount = 0;
+		int distanceCount = 0;
+		int exitCount = 0;
+
+		// Candidates are kept as character ranges and suggestions as term
+		// ids, so Strings are only made for terms that are found
+		CandidateQueue candidates = candidateQueues.get();
+		candidates.clear();
+		IntSet hashset2 = suggestionSets.get();
+		hashset2.clear();
+
+		// With a prefix length only the input's prefix is deleted from, so
+		// distances are measured against the whole input instead of being
+		// implied by how many characters were deleted
+		int inputLength = input.length();
+		boolean truncated = false;
+		if ((prefixLength > 0) && (inputLength > prefixLength)) {
+			inputLength = prefixLength;
+			truncated = true;
+		}
+
+		// Nothing further than maxDistance2 can make it into the result; TOP
+		// and CLOSEST lower it to the best distance found, ALL to the distance
+		// that already fills the limit
+		int maxDistance2 = maxDistance;
+		int[] distanceCounts = new int[maxDistance + 1];
+
+		candidates.add(input, inputLength);
+
+		// The clock is only read every 64 candidates, which keeps its cost
+		// out of the loop while overrunning the deadline by little
+		boolean timed = deadline != Long.MAX_VALUE;
+		boolean partial = false;
+
+		int candidate;
+		while ((candidate = candidates.poll()) >= 0) {
+			if ((candidateCount >= maxCandidates)
+					|| (timed && ((candidateCount & 63) == 0) && (System
+							.nanoTime() - deadline >= 0))) {
+				partial = true;
+				break;
+			}
+			candidateCount++;
+			int candidateLength = candidates.getLength(candidate);
+			int lengthDiff = inputLength - candidateLength;
+
+			// Candidates come in order of deleted characters, and no term
+			// found from here on can be closer than that
+			if (lengthDiff > maxDistance2) {
+				exitCount++;
+				break;
+			}
+
+			probeCount++;
+			int entry = index.find(candidates.getChars(),
+					candidates.getOffset(candidate), candidateLength,
+					candidates.getHash(candidate));
+			if (entry >= 0) {
+				// Removed terms have a count of 0
+				int termint = index.getTermId(entry);
+				if ((termint >= 0) && hashset2.add(termint)
+						&& (index.getCount(termint) > 0)) {
+					String term = index.getTerm(termint);
+					if (truncated)
+						distanceCount++;
+					int distance = truncated ? EditDistance
+							.damerauLevenshtein(term, input, maxDistance2)
+							: lengthDiff;
+					if (distance <= maxDistance2)
+						maxDistance2 = AddSuggestion(suggestions,
+								new SuggestItem(term, distance,
+										index.getCount(termint)), verbosity,
+								maxDistance2, limit, distanceCounts);
+
+					// The input itself is in the dictionary
+					if ((distance == 0) && (verbosity != Verbosity.ALL)) {
+						exitCount++;
+						break;
+					}
+				}
+
+				int suggestionCount = index.getSuggestionCount(entry);
+				for (int s = 0; s < suggestionCount; s++) {
+					int suggestionint = index.getSuggestion(entry, s);
+					if (!hashset2.add(suggestionint)
+							|| (index.getCount(suggestionint) == 0))
+						continue;
+					String suggestion = index.getTerm(suggestionint);
+					if (Math.abs(suggestion.length() - input.length()) > maxDistance2)
+						continue;
+
+					int distance = 0;
+					if (truncated) {
+						distanceCount++;
+						distance = EditDistance.damerauLevenshtein(suggestion,
+								input, maxDistance2);
+					}
+					else if (suggestion.length() == candidateLength)
+						distance = lengthDiff;
+					else if (input.length() == candidateLength)
+						distance = suggestion.length() - candidateLength;
+					else {
+						int ii = 0;
+						int jj = 0;
+						while ((ii < suggestion.length())
+								&& (ii < input.length())
+								&& (suggestion.charAt(ii) == input.charAt(ii)))
+							ii++;
+						while ((jj < suggestion.length() - ii)
+								&& (jj < input.length() - ii)
+								&& (suggestion.charAt(suggestion.length() - jj
+										- 1) == input.charAt(input.length()
+										- jj - 1)))
+							jj++;
+						distanceCount++;
+						distance = EditDistance.damerauLevenshtein(suggestion,
+								ii, suggestion.length() - jj, input, ii,
+								input.length() - jj, maxDistance2);
+					}
+
+					if (distance <= maxDistance2)
+						maxDistance2 = AddSuggestion(suggestions,
+								new SuggestItem(suggestion, distance,
+										index.getCount(suggestionint)),
+								verbosity, maxDistance2, limit, distanceCounts);
+				}
+			}
+
+			if (lengthDiff < maxDistance) {
+				// Deleting more cannot find anything closer than what TOP and
+				// CLOSEST already have
+				if ((verbosity != Verbosity.ALL) && (lengthDiff >= maxDistance2)) {
+					exitCount++;
+					continue;
+				}
+
+				candidates.addDeletes(candidate);
+			}
+		}
+
+		if (suggestions.size() > 1)
+			Collections.sort(suggestions);
+		if (suggestions.size() > limit)
+			suggestions = new ArrayList<SuggestItem>(suggestions.subList(0,
+					limit));
+		if (metrics != null)
+			metrics.recordSearch(candidateCount, probeCount, distanceCount,
+					exitCount, suggestions.size());
+		return new LookupResult(suggestions, partial, candidateCount);
+	}
+
+	// Adds a suggestion within maxDistance2 and returns the new maxDistance2
+	private int AddSuggestion(List<SuggestItem> suggestions, SuggestItem si,
+			Verbosity verbosity, int maxDistance2, int limit,
+			int[] distanceCounts) {
+		int distance = si.getDistance();
+		switch (verbosity) {
+		case TOP:
+			if (suggestions.size() == 0)
+				suggestions.add(si);
+			else if ((distance < maxDistance2)
+					|| (si.getCount() > suggestions.get(0).getCount()))
+				suggestions.set(0, si);
+			else
+				return maxDistance2;
+			return distance;
+		case CLOSEST:
+			if (distance < maxDistance2)
+				suggestions.clear();
+			suggestions.add(si);
+			return distance;
+		default:
+			suggestions.add(si);
+			// Once the limit is filled, only suggestions as close as the
+			// furthest one needed can still change the result
+			distanceCounts[distance]++;
+			int found = 0;
+			for (int d = 0; d < maxDistance2; d++) {
+				found += distanceCounts[d];
+				if (found >= limit)
+					return d;
+			}
+			return maxDistance2;
+		}
+	}
+
+	// Corrects an input to its closest, most common term, or each of its
+	// words if tokenizing, recording the corrections in the journal if one is
+	// set
+	public String Correct(String input) {
+		NameCorrector names = this.names;
+		if (names != null)
+			return names.correct(input);
+		SuggestItem suggestion = CorrectTerm(input, editDistanceMax, budget);
+		return (suggestion == null) ? input : suggestion.getTerm();
+	}
+
+	// Looks up the closest, most common term within maxDistance of an input,
+	// within a budget unless it is null, and records the correction in the
+	// journal; null if there is none. A lookup that ran out of budget may
+	// have missed a closer term, so only an exact match is taken from it.
+	SuggestItem CorrectTerm(String input, int maxDistance, LookupBudget budget) {
+		LookupResult result = Lookup(input, Verbosity.TOP, maxDistance,
+				Integer.MAX_VALUE, budget);
+		List<SuggestItem> suggestions = result.getSuggestions();
+		SuggestItem suggestion = suggestions.isEmpty() ? null : suggestions
+				.get(0);
+		if (result.isPartial() && (suggestion != null)
+				&& (suggestion.getDistance() > 0))
+			suggestion = null;
+
+		CorrectionJournal journal = this.journal;
+		if (journal != null)
+			journal.record(input, suggestion, result.isPartial());
+		return suggestion;
+	}
+
+	public void createDictionary(String fileName) {
+		CreateDictionary(fileName);
+		return;
+	}
+
+	public static int DamerauLevenshteinDistance(String a, String b) {
+		final int inf = a.length() + b.length() + 1;
+		int[][] H = new int[a.length() + 2][b.length() + 2];
+		for (int i = 0; i <= a.length(); i++) {
+			H[i + 1][1] = i;
+			H[i + 1][0] = inf;
+		}
+		for (int j = 0; j <= b.length(); j++) {
+			H[1][j + 1] = j;
+			H[0][j + 1] = inf;
+		}
+		HashMap<Character, Integer> DA = new HashMap<Character, Integer>();
+		for (int d = 0; d < a.length(); d++)
+			if (!DA.containsKey(a.charAt(d)))
+				DA.put(a.charAt(d), 0);
+
+		for (int d = 0; d < b.length(); d++)
+			if (!DA.containsKey(b.charAt(d)))
+				DA.put(b.charAt(d), 0);
+
+		for (int i = 1; i <= a.length(); i++) {
+			int DB = 0;
+			for (int j = 1; j <= b.length(); j++) {
+				final int i1 = DA.get(b.charAt(j - 1));
+				final int j1 = DB;
+				int d = 1;
+				if (a.charAt(i - 1) == b.charAt(j - 1)) {
+					d = 0;
+					DB = j;
+				}
+				H[i + 1][j + 1] = min(H[i][j] + d, H[i + 1][j] + 1,
+						H[i][j + 1] + 1, H[i1][j1] + ((i - i1 - 1)) + 1
+								+ ((j - j1 - 1)));
+			}
+			DA.put(a.charAt(i - 1), i);
+		}
+		return H[a.length() + 1][b.length() + 1];
+	}
+
+	public static int min(int a, int b, int c, int d) {
+		return Math.min(a, Math.min(b, Math.min(c, d)));
+	}
 }
\ No newline at end of file
@@ -0,0 +1,366 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counts and histograms of the work done by lookups and dictionary builds.
+ * Lookups count their work in local variables and only add it here when
+ * metrics are enabled, so a disabled instance costs one check per lookup.
+ * Counts use LongAdder so threads looking up at the same time don't contend.
+ */
+public class SymSpellMetrics implements SymSpellMetricsMBean {
+
+	private volatile boolean enabled = true;
+
+	private final LongAdder lookups = new LongAdder();
+	private final LongAdder candidates = new LongAdder();
+	private final LongAdder probes = new LongAdder();
+	private final LongAdder distances = new LongAdder();
+	private final LongAdder earlyExits = new LongAdder();
+	private final LongAdder suggestions = new LongAdder();
+	private final LongAdder partials = new LongAdder();
+	private final Histogram latency = new Histogram();
+	private final Histogram candidatesPerLookup = new Histogram();
+
+	private final LongAdder builds = new LongAdder();
+	private final AtomicLong lastBuildMillis = new AtomicLong();
+	private final AtomicLong indexEntries = new AtomicLong();
+	private final AtomicLong indexBytes = new AtomicLong();
+
+	/**
+	 * Registers the metrics with the platform MBean server
+	 * 
+	 * @param name
+	 *            Name that tells these metrics apart from others
+	 * @return Name the metrics were registered under
+	 * @throws JMException
+	 *             If the name is taken or not valid
+	 */
+	public ObjectName register(String name) throws JMException {
+		ObjectName objectName = new ObjectName(
+				"JavaFileCorrect:type=SymSpell,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+				objectName);
+		return objectName;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+		return;
+	}
+
+	@Override
+	public void reset() {
+		this.lookups.reset();
+		this.candidates.reset();
+		this.probes.reset();
+		this.distances.reset();
+		this.earlyExits.reset();
+		this.suggestions.reset();
+		this.partials.reset();
+		this.latency.reset();
+		this.candidatesPerLookup.reset();
+		this.builds.reset();
+		return;
+	}
+
+	/**
+	 * Records the work done by the search of one lookup
+	 * 
+	 * @param candidates
+	 *            Candidates taken from the candidate queue
+	 * @param probes
+	 *            Candidates looked for in the index
+	 * @param distances
+	 *            Edit distances computed
+	 * @param earlyExits
+	 *            Times the search stopped early or skipped deleting
+	 * @param suggestions
+	 *            Suggestions returned
+	 */
+	public void recordSearch(int candidates, int probes, int distances,
+			int earlyExits, int suggestions) {
+		this.candidates.add(candidates);
+		this.probes.add(probes);
+		this.distances.add(distances);
+		this.earlyExits.add(earlyExits);
+		this.suggestions.add(suggestions);
+		this.candidatesPerLookup.record(candidates);
+		return;
+	}
+
+	/**
+	 * Records the time of one lookup, including lookups answered by a cache
+	 * 
+	 * @param nanos
+	 *            Time the lookup took
+	 */
+	public void recordLookup(long nanos) {
+		this.lookups.increment();
+		this.latency.record(nanos);
+		return;
+	}
+
+	/**
+	 * Records a lookup that ran out of its budget and returned a partial
+	 * result
+	 */
+	public void recordPartial() {
+		this.partials.increment();
+		return;
+	}
+
+	/**
+	 * Records a dictionary that was built or mapped
+	 * 
+	 * @param millis
+	 *            Time the build took
+	 * @param entries
+	 *            Entries in the index
+	 * @param bytes
+	 *            Estimated size of the index
+	 */
+	public void recordBuild(long millis, long entries, long bytes) {
+		this.builds.increment();
+		this.lastBuildMillis.set(millis);
+		this.indexEntries.set(entries);
+		this.indexBytes.set(bytes);
+		return;
+	}
+
+	@Override
+	public long getLookupCount() {
+		return this.lookups.sum();
+	}
+
+	@Override
+	public long getCandidateCount() {
+		return this.candidates.sum();
+	}
+
+	@Override
+	public long getProbeCount() {
+		return this.probes.sum();
+	}
+
+	@Override
+	public long getDistanceCount() {
+		return this.distances.sum();
+	}
+
+	@Override
+	public long getEarlyExitCount() {
+		return this.earlyExits.sum();
+	}
+
+	@Override
+	public long getSuggestionCount() {
+		return this.suggestions.sum();
+	}
+
+	@Override
+	public long getPartialCount() {
+		return this.partials.sum();
+	}
+
+	@Override
+	public long getLatencyMeanNanos() {
+		return this.latency.mean();
+	}
+
+	@Override
+	public long getLatencyP50Nanos() {
+		return this.latency.percentile(50);
+	}
+
+	@Override
+	public long getLatencyP99Nanos() {
+		return this.latency.percentile(99);
+	}
+
+	@Override
+	public long getLatencyMaxNanos() {
+		return this.latency.max();
+	}
+
+	@Override
+	public long getCandidatesP99() {
+		return this.candidatesPerLookup.percentile(99);
+	}
+
+	@Override
+	public long getBuildCount() {
+		return this.builds.sum();
+	}
+
+	@Override
+	public long getLastBuildMillis() {
+		return this.lastBuildMillis.get();
+	}
+
+	@Override
+	public long getIndexEntries() {
+		return this.indexEntries.get();
+	}
+
+	@Override
+	public long getIndexBytes() {
+		return this.indexBytes.get();
+	}
+
+	/**
+	 * Gets every metric at once. Metrics recorded while the snapshot is taken
+	 * may be in some of its values and not in others.
+	 * 
+	 * @return Metric names and values, in a fixed order
+	 */
+	public Map<String, Long> snapshot() {
+		Map<String, Long> snapshot = new LinkedHashMap<String, Long>();
+		snapshot.put("lookups", this.getLookupCount());
+		snapshot.put("candidates", this.getCandidateCount());
+		snapshot.put("probes", this.getProbeCount());
+		snapshot.put("distances", this.getDistanceCount());
+		snapshot.put("earlyExits", this.getEarlyExitCount());
+		snapshot.put("suggestions", this.getSuggestionCount());
+		snapshot.put("partials", this.getPartialCount());
+		snapshot.put("latencyMeanNanos", this.getLatencyMeanNanos());
+		snapshot.put("latencyP50Nanos", this.getLatencyP50Nanos());
+		snapshot.put("latencyP90Nanos", this.latency.percentile(90));
+		snapshot.put("latencyP99Nanos", this.getLatencyP99Nanos());
+		snapshot.put("latencyMaxNanos", this.getLatencyMaxNanos());
+		snapshot.put("candidatesP50", this.candidatesPerLookup.percentile(50));
+		snapshot.put("candidatesP99", this.getCandidatesP99());
+		snapshot.put("builds", this.getBuildCount());
+		snapshot.put("lastBuildMillis", this.getLastBuildMillis());
+		snapshot.put("indexEntries", this.getIndexEntries());
+		snapshot.put("indexBytes", this.getIndexBytes());
+		return Collections.unmodifiableMap(snapshot);
+	}
+
+	@Override
+	public String toString() {
+		return this.snapshot().toString();
+	}
+
+	// Histogram of non-negative values in buckets that each cover a quarter
+	// of a power of two, so percentiles are within 25% of the real value
+	private static final class Histogram {
+
+		private static final int SUB_BITS = 2;
+
+		private final LongAdder[] buckets = new LongAdder[64 << SUB_BITS];
+		private final LongAdder count = new LongAdder();
+		private final LongAdder sum = new LongAdder();
+		private final AtomicLong max = new AtomicLong();
+
+		private Histogram() {
+			for (int x = 0; x < this.buckets.length; x++) {
+				this.buckets[x] = new LongAdder();
+			}
+		}
+
+		private void record(long value) {
+			this.buckets[Histogram.bucket(value)].increment();
+			this.count.increment();
+			this.sum.add(value);
+			long max;
+			while (value > (max = this.max.get())
+					&& !this.max.compareAndSet(max, value)) {
+				// Another thread raised the max first, so check again
+			}
+			return;
+		}
+
+		private long mean() {
+			long count = this.count.sum();
+			return (count == 0) ? 0 : this.sum.sum() / count;
+		}
+
+		private long max() {
+			return this.max.get();
+		}
+
+		// Gets the upper end of the bucket holding the percentile
+		private long percentile(double percent) {
+			long count = this.count.sum();
+			if (count == 0) {
+				return 0;
+			}
+			long rank = (long) Math.ceil(count * percent / 100);
+			long seen = 0;
+			for (int x = 0; x < this.buckets.length; x++) {
+				seen += this.buckets[x].sum();
+				if (seen >= rank) {
+					return Math.min(Histogram.upperBound(x), this.max());
+				}
+			}
+			return this.max();
+		}
+
+		private void reset() {
+			for (LongAdder bucket : this.buckets) {
+				bucket.reset();
+			}
+			this.count.reset();
+			this.sum.reset();
+			this.max.set(0);
+			return;
+		}
+
+		// Values below 4 get their own buckets, larger ones are split by
+		// their highest bit and the two bits after it
+		private static int bucket(long value) {
+			if (value < (1 << Histogram.SUB_BITS)) {
+				return (int) Math.max(value, 0);
+			}
+			int high = 63 - Long.numberOfLeadingZeros(value);
+			int sub = (int) (value >>> (high - Histogram.SUB_BITS))
+					& ((1 << Histogram.SUB_BITS) - 1);
+			return ((high - Histogram.SUB_BITS + 1) << Histogram.SUB_BITS)
+					+ sub;
+		}
+
+		private static long upperBound(int bucket) {
+			if (bucket < (1 << Histogram.SUB_BITS)) {
+				return bucket;
+			}
+			int high = (bucket >>> Histogram.SUB_BITS) + Histogram.SUB_BITS - 1;
+			long sub = bucket & ((1 << Histogram.SUB_BITS) - 1);
+			long lower = (1L << high)
+					+ (sub << (high - Histogram.SUB_BITS));
+			return lower + (1L << (high - Histogram.SUB_BITS)) - 1;
+		}
+	}
+}
@@ -0,0 +1,161 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+/**
+ * Management interface of the lookup and build metrics of a SymSpell, so
+ * they can be read and switched on or off over JMX
+ */
+public interface SymSpellMetricsMBean {
+
+	/**
+	 * Checks if metrics are being collected
+	 * 
+	 * @return True if lookups and builds are recorded
+	 */
+	public boolean isEnabled();
+
+	/**
+	 * Switches collecting metrics on or off
+	 * 
+	 * @param enabled
+	 *            True to record lookups and builds
+	 */
+	public void setEnabled(boolean enabled);
+
+	/**
+	 * Sets every count back to 0
+	 */
+	public void reset();
+
+	/**
+	 * Gets the number of lookups recorded
+	 * 
+	 * @return Number of lookups
+	 */
+	public long getLookupCount();
+
+	/**
+	 * Gets the number of candidates taken from the candidate queue
+	 * 
+	 * @return Number of candidates
+	 */
+	public long getCandidateCount();
+
+	/**
+	 * Gets the number of times a candidate was looked for in the index
+	 * 
+	 * @return Number of index probes
+	 */
+	public long getProbeCount();
+
+	/**
+	 * Gets the number of edit distances computed
+	 * 
+	 * @return Number of distance computations
+	 */
+	public long getDistanceCount();
+
+	/**
+	 * Gets the number of times a lookup stopped early or skipped deleting
+	 * from a candidate, because nothing closer could be found
+	 * 
+	 * @return Number of early exits
+	 */
+	public long getEarlyExitCount();
+
+	/**
+	 * Gets the number of suggestions returned
+	 * 
+	 * @return Number of suggestions
+	 */
+	public long getSuggestionCount();
+
+	/**
+	 * Gets the number of lookups that ran out of their budget and returned
+	 * the best suggestions found before they stopped
+	 * 
+	 * @return Number of partial lookups
+	 */
+	public long getPartialCount();
+
+	/**
+	 * Gets the average time of a lookup
+	 * 
+	 * @return Mean lookup latency in nanoseconds
+	 */
+	public long getLatencyMeanNanos();
+
+	/**
+	 * Gets the time half of the lookups took at most
+	 * 
+	 * @return Median lookup latency in nanoseconds
+	 */
+	public long getLatencyP50Nanos();
+
+	/**
+	 * Gets the time 99% of the lookups took at most
+	 * 
+	 * @return 99th percentile lookup latency in nanoseconds
+	 */
+	public long getLatencyP99Nanos();
+
+	/**
+	 * Gets the time of the slowest lookup
+	 * 
+	 * @return Largest lookup latency in nanoseconds
+	 */
+	public long getLatencyMaxNanos();
+
+	/**
+	 * Gets the number of candidates 99% of the lookups took at most
+	 * 
+	 * @return 99th percentile of candidates per lookup
+	 */
+	public long getCandidatesP99();
+
+	/**
+	 * Gets the number of dictionaries built or mapped
+	 * 
+	 * @return Number of builds
+	 */
+	public long getBuildCount();
+
+	/**
+	 * Gets how long the last dictionary took to build or map
+	 * 
+	 * @return Build time in milliseconds
+	 */
+	public long getLastBuildMillis();
+
+	/**
+	 * Gets the number of entries in the last dictionary built or mapped
+	 * 
+	 * @return Number of index entries
+	 */
+	public long getIndexEntries();
+
+	/**
+	 * Gets the estimated size of the last dictionary built, or the size of the
+	 * file of the last dictionary mapped
+	 * 
+	 * @return Index size in bytes
+	 */
+	public long getIndexBytes();
+}
@@ -0,0 +1,41 @@
+/*
+Copyright © 2015-2017 Leejae Karinja
+
+This file is part of Java File Correct.
+
+Java File Correct is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Java File Correct is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Java File Correct.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+/**
+ * Controls how many suggestions a lookup returns
+ */
+public enum Verbosity {
+	/**
+	 * Only the suggestion with the smallest distance, and the highest count
+	 * among those. The lookup stops as soon as nothing better can be found.
+	 */
+	TOP,
+
+	/**
+	 * Every suggestion at the smallest distance found, by highest count
+	 */
+	CLOSEST,
+
+	/**
+	 * Every suggestion within the maximum distance, by distance and then by
+	 * highest count
+	 */
+	ALL
+}